@@ -1,26 +1,24 @@
 package com.fizzed.buildx;
 
 import com.fizzed.blaze.Contexts;
-import com.fizzed.blaze.ssh.SshSession;
 import com.fizzed.buildx.internal.*;
-import com.fizzed.jsync.engine.JsyncMode;
-import com.fizzed.jsync.vfs.VirtualVolume;
 import com.fizzed.jsync.vfs.util.Checksums;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.TeeOutputStream;
 import org.slf4j.Logger;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
-import static com.fizzed.blaze.SecureShells.sshConnect;
-import static com.fizzed.blaze.jsync.Jsyncs.*;
 import static com.fizzed.blaze.util.TerminalHelper.*;
+import static com.fizzed.buildx.internal.Utils.targetKey;
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
@@ -31,6 +29,9 @@ public class Buildx {
     protected final Path relProjectDir;
     protected final Path absProjectDir;
     protected Path resultsFile;
+    // an OpenMetrics textfile of the run, and how often it's updated while running (or null for only at the end)
+    protected Path metricsFile;
+    protected Duration metricsInterval;
     protected final List<Target> targets;
     protected Set<String> tags;
     protected boolean configure;
@@ -39,6 +40,24 @@ public class Buildx {
     // directories we don't want to sync to remote hosts
     protected List<String> ignorePaths;
     protected List<HostExecute> prepareHostForContainers;
+    // how long probed host info is cached in .buildx-cache for, and whether to ignore the cache and probe again
+    protected Duration probeCacheTtl;
+    protected boolean reprobe;
+    protected boolean containerSessions;
+    // how many container images are pulled at once on each host
+    protected int pullConcurrency;
+    // how many hosts the project is synced to at once
+    protected int syncParallelism;
+    // named pools of equivalent hosts that targets can be dispatched to
+    protected final Map<String,List<String>> hostPools;
+    protected boolean failFast;
+    // the timeout of a job (unless its target has one) and how long it can go without output, or null for none
+    protected Duration jobTimeout;
+    protected Duration stallTimeout;
+    protected boolean rerunFailed;
+    protected boolean resultCache;
+    protected boolean compressLogs;
+    protected LogRetention logRetention;
 
     public Buildx(List<Target> targets) {
         this(Contexts.withBaseDir(".."), targets);
@@ -57,6 +76,8 @@ public class Buildx {
         }
         this.configure = true;
         this.resultsFile = null;        // disabled by default
+        this.metricsFile = null;        // disabled by default
+        this.metricsInterval = null;
         this.jobExecutor = new OnePerHostParallelJobExecutor();
         this.ignorePaths = new ArrayList<>();
         this.ignorePaths.add(".git/");
@@ -64,6 +85,19 @@ public class Buildx {
         this.ignorePaths.add(".buildx-logs/");
         this.ignorePaths.add("target/");
         this.ignorePaths.add(".idea/");
+        this.probeCacheTtl = Duration.ofDays(7);
+        this.reprobe = false;
+        this.containerSessions = false;
+        this.pullConcurrency = 2;
+        this.syncParallelism = 4;
+        this.hostPools = new LinkedHashMap<>();
+        this.failFast = false;
+        this.jobTimeout = null;
+        this.stallTimeout = null;
+        this.rerunFailed = false;
+        this.resultCache = false;
+        this.compressLogs = false;
+        this.logRetention = new LogRetention(0, null, 0L);
     }
 
     public List<Target> getTargets() {
@@ -83,6 +117,37 @@ public class Buildx {
         return this;
     }
 
+    public Path getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * Writes metrics of the run (job & phase durations, bytes synced, probe latencies, queue waits) to a file as
+     * OpenMetrics text, e.g. for the textfile collector of a prometheus node_exporter. The file is replaced atomically.
+     *
+     * @param metricsFile the file to write them to, or null to not write them (the default)
+     * @return this
+     */
+    public Buildx metricsFile(Path metricsFile) {
+        this.metricsFile = metricsFile;
+        return this;
+    }
+
+    public Duration getMetricsInterval() {
+        return metricsInterval;
+    }
+
+    /**
+     * How often the metrics file is updated while jobs are still running, so a long run can be watched as it goes.
+     *
+     * @param metricsInterval the interval, or null to only write the metrics once the run completes (the default)
+     * @return this
+     */
+    public Buildx metricsInterval(Duration metricsInterval) {
+        this.metricsInterval = metricsInterval;
+        return this;
+    }
+
     public Buildx tags(Set<String> tags) {
         this.tags = tags;
         return this;
@@ -103,11 +168,185 @@ public class Buildx {
         return this;
     }
 
+    /**
+     * Sets how jobs are executed (unless --serial is given), e.g. one at a time per host (the default) or in several
+     * slots per host with {@link SlotsPerHostParallelJobExecutor}. Jobs running at once on the same host share the one
+     * copy of the project on it, so only run several at once if they don't write into the same paths of it.
+     *
+     * @param jobExecutor the executor
+     * @return this
+     */
     public Buildx jobExecutor(JobExecutor jobExecutor) {
         this.jobExecutor = jobExecutor;
         return this;
     }
 
+    /**
+     * Sets how long probed host info (os, arch, libc, podman, etc.) and container info is cached in .buildx-cache for.
+     * The cache is also validated against a cheap fingerprint of the host (or the digest of the container image), so a
+     * changed host or image will be probed again regardless.
+     *
+     * @param probeCacheTtl the time-to-live of a cached probe, or zero/null to disable the cache
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx probeCacheTtl(Duration probeCacheTtl) {
+        this.probeCacheTtl = probeCacheTtl;
+        return this;
+    }
+
+    /**
+     * Ignores any cached probes of hosts & containers and probes them again (which then refreshes the cache).
+     *
+     * @param reprobe true to probe all hosts again
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx reprobe(boolean reprobe) {
+        this.reprobe = reprobe;
+        return this;
+    }
+
+    /**
+     * Runs every project.exec() of a container job inside one long-lived container (started on the first exec and
+     * removed when the job finishes) instead of creating a new container for every exec. This can save seconds per
+     * exec, especially for emulated architectures.
+     *
+     * @param containerSessions true to use a container session per job
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx containerSessions(boolean containerSessions) {
+        this.containerSessions = containerSessions;
+        return this;
+    }
+
+    /**
+     * Sets how many container images are pulled at once on each host. Before any container is probed, the distinct
+     * images the targets of a host need are pulled (unless the host already has them), so large images download
+     * concurrently rather than one target at a time.
+     *
+     * @param pullConcurrency the max number of concurrent pulls per host
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx pullConcurrency(int pullConcurrency) {
+        this.pullConcurrency = pullConcurrency;
+        return this;
+    }
+
+    /**
+     * Sets how many remote hosts the project is synced to at once. Each host is prepared concurrently, but syncing
+     * is mostly limited by the local disk and network, so too many at once only slows them all down.
+     *
+     * @param syncParallelism the max number of hosts synced concurrently
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx syncParallelism(int syncParallelism) {
+        this.syncParallelism = syncParallelism;
+        return this;
+    }
+
+    /**
+     * Defines a pool of equivalent hosts (e.g. identical builders). A target with this pool (see Target.setHostPool)
+     * runs on whichever host of the pool frees up first, and each host is only synced & prepared once it receives
+     * work.
+     *
+     * @param name the name of the pool
+     * @param hosts the hosts in the pool
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx hostPool(String name, String... hosts) {
+        if (hosts == null || hosts.length == 0) {
+            throw new IllegalArgumentException("Host pool " + name + " must have at least one host");
+        }
+        this.hostPools.put(name, asList(hosts));
+        return this;
+    }
+
+    /**
+     * Stops at the first failed job: every other job is cancelled, so pending jobs never start and running jobs are
+     * interrupted (their processes killed and containers removed). Can also be enabled with --fail-fast.
+     *
+     * @param failFast true to cancel all other jobs once one fails
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx failFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /**
+     * Sets how long any job may run for (unless its target has its own timeout, see Target.setTimeout). A job that
+     * runs longer is stopped (its processes killed and containers removed) and marked as timed out, so the rest of
+     * the jobs on its host can proceed.
+     *
+     * @param jobTimeout the timeout of a job, or null for none
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx jobTimeout(Duration jobTimeout) {
+        this.jobTimeout = jobTimeout;
+        return this;
+    }
+
+    /**
+     * Sets how long a job may go without producing any output (e.g. a deadlocked test) before it is considered stalled,
+     * then stopped and marked as timed out.
+     *
+     * @param stallTimeout the max time without output, or null to never consider a job stalled
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx stallTimeout(Duration stallTimeout) {
+        this.stallTimeout = stallTimeout;
+        return this;
+    }
+
+    /**
+     * Only runs the targets that did not succeed in the most recent run (according to its journal in .buildx-logs),
+     * including any it never got to because it was killed halfway through. Can also be enabled with --rerun-failed.
+     *
+     * @param rerunFailed true to only rerun the targets that did not succeed last time
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx rerunFailed(boolean rerunFailed) {
+        this.rerunFailed = rerunFailed;
+        return this;
+    }
+
+    /**
+     * Skips any job whose inputs (the synced project tree, the target, its container image digest, and the key of
+     * JobExecute.cacheKey) are unchanged since it last succeeded, restoring the artifacts it produced back then (see
+     * Target.setArtifacts) instead. Results are cached in .buildx-cache/results. Can be bypassed with --no-result-cache.
+     *
+     * @param resultCache true to skip jobs that have already succeeded with the same inputs
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx resultCache(boolean resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
+    /**
+     * Gzips the log of each job (to a .log.gz) in the background as soon as the job completes.
+     *
+     * @param compressLogs true to compress the logs of completed jobs
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx compressLogs(boolean compressLogs) {
+        this.compressLogs = compressLogs;
+        return this;
+    }
+
+    /**
+     * Sets how many logs of previous runs are kept in .buildx-logs, which are otherwise never deleted. Older runs are
+     * pruned at the start of each run, but the most recent run is always kept.
+     *
+     * @param maxRuns the max number of runs to keep, or zero for no limit
+     * @param maxAge the max age of a run to keep, or null for no limit
+     * @param maxBytes the max total size of the logs of the runs to keep, or zero for no limit
+     * @return the current instance of Buildx for method chaining
+     */
+    public Buildx logRetention(int maxRuns, Duration maxAge, long maxBytes) {
+        this.logRetention = new LogRetention(maxRuns, maxAge, maxBytes);
+        return this;
+    }
+
     /**
      * Adds a specific path to the list of paths to be ignored when rsyncing to remote hosts.
      *
@@ -138,9 +377,15 @@ public class Buildx {
         if (target.getHost() != null) {
             log.info("  on host {}", target.getHost());
         }
+        if (target.getHostPool() != null) {
+            log.info("  on host pool {} {}", target.getHostPool(), this.hostPools.get(target.getHostPool()));
+        }
         if (target.getTags() != null) {
             log.info("  tagged {}", target.getTags());
         }
+        if (target.getDependsOn() != null) {
+            log.info("  depends on {}", target.getDependsOn());
+        }
     }
 
     /**
@@ -164,16 +409,34 @@ public class Buildx {
         Objects.requireNonNull(this.relProjectDir, "relProjectDir");
         Objects.requireNonNull(this.absProjectDir, "absProjectDir");
 
-        // apply blaze configuration to build filtered targets, what executor to use
         final String executeId = Long.toString(System.currentTimeMillis());
+
+        // the whole run is an event in a flight recording of this jvm (if one is running), around the events of its phases
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.RUN).detail(executeId)) {
+            this.execute(jobExecute, executeId);
+        }
+    }
+
+    private void execute(JobExecute jobExecute, String executeId) throws Exception {
+        // apply blaze configuration to build filtered targets, what executor to use
         final List<Target> configuredTargets;
         final JobExecutor configuredExecutor;
+        final boolean configuredReprobe;
+        final boolean configuredFailFast;
+        final boolean configuredResultCache;
         if (this.configure) {
+            final boolean configuredRerunFailed = this.rerunFailed || Contexts.config().flag("rerun-failed").orElse(false);
             configuredExecutor = this.configuredExecutor();
-            configuredTargets = this.configuredTargets();
+            configuredTargets = configuredRerunFailed ? this.failedTargets(this.configuredTargets()) : this.configuredTargets();
+            configuredReprobe = this.reprobe || Contexts.config().flag("reprobe").orElse(false);
+            configuredFailFast = this.failFast || Contexts.config().flag("fail-fast").orElse(false);
+            configuredResultCache = this.resultCache && !Contexts.config().flag("no-result-cache").orElse(false);
         } else {
             configuredExecutor = this.jobExecutor;
-            configuredTargets = this.targets;
+            configuredTargets = this.rerunFailed ? this.failedTargets(this.targets) : this.targets;
+            configuredReprobe = this.reprobe;
+            configuredFailFast = this.failFast;
+            configuredResultCache = this.resultCache;
         }
 
 
@@ -208,6 +471,18 @@ public class Buildx {
             log.info("Run these tests on a smaller subset of tags, as comma-delimited list, matched via 'equals' on tags:");
             log.info("  --tags {}", exampleTags);
             log.info("");
+            log.info("Ignore cached probes of hosts & containers (e.g. you upgraded podman) and probe them again:");
+            log.info("  --reprobe");
+            log.info("");
+            log.info("Stop at the first failed job, cancelling all pending and running jobs:");
+            log.info("  --fail-fast");
+            log.info("");
+            log.info("Only rerun the targets that did not succeed (or never ran) in the last run:");
+            log.info("  --rerun-failed");
+            log.info("");
+            log.info("Run every target even if its result is cached (if the result cache is enabled):");
+            log.info("  --no-result-cache");
+            log.info("");
             log.info(fixedWidthLeft("", 100, '!'));
         }
 
@@ -228,32 +503,40 @@ public class Buildx {
             return;
         }
 
+        for (Target target : configuredTargets) {
+            if (target.getHostPool() != null && !this.hostPools.containsKey(target.getHostPool())) {
+                throw new IllegalArgumentException("Target " + target + " has host pool " + target.getHostPool()
+                    + " which does not exist (did you call Buildx.hostPool?)");
+            }
+        }
+
+        final List<Path> prunedLogDirs = this.logRetention.prune(this.absProjectDir.resolve(".buildx-logs"), System.currentTimeMillis());
+        if (!prunedLogDirs.isEmpty()) {
+            log.info("Pruned the logs of {} previous run(s) from .buildx-logs", prunedLogDirs.size());
+        }
+
         // create the buildx dir and populate it
         this.createBuildxDirectory(this.absProjectDir);
 
-        final Set<Host> hostsSynced = new HashSet<>();
-        final Set<Host> hostsPreparedForContainers = new HashSet<>();
         final List<Job> jobs = new ArrayList<>();
+        final Map<String,List<Job>> jobsPerHost = new LinkedHashMap<>();
+        final Map<String,List<Job>> jobsPerHostPool = new LinkedHashMap<>();
         final AtomicInteger jobIdGenerator = new AtomicInteger(0);
 
         for (Target target : configuredTargets) {
             final int jobId = jobIdGenerator.getAndIncrement();
-            final HostImpl host;
-            final ContainerImpl container;
-            final ProjectImpl project;
-            final SshSession sshSession;
-            final String remoteProjectDir;
             final JobOutput output;
 
-            // log info about the job to the console
-            log.info(fixedWidthCenter("Preparing Job #" + jobId, 100, '='));
-
-            // 1: create output where job actions and stdout/stderr will go to
+            // create output where job actions and stdout/stderr will go to
             {
                 final Path absFile = this.absProjectDir.resolve(".buildx-logs/" + executeId + "/job-" + jobId + "-" + target.getName() + ".log");
                 final Path file = this.absProjectDir.relativize(absFile);
                 Files.createDirectories(absFile.getParent());
-                final OutputStream underlyingFileOutput = Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                // all the output of the job is metered (so the watchdog can tell if it stalled) and written to the file
+                // on a thread of its own
+                final OutputMeter underlyingFileOutput = new OutputMeter(new AsyncLogWriter(
+                    Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING),
+                    "buildx-log-job-" + jobId));
                 final PrintStream fileOutput = new PrintStream(underlyingFileOutput);
                 final PrintStream consoleOutput;
 
@@ -265,119 +548,135 @@ public class Buildx {
                     consoleOutput = new PrintStream(underlyingFileOutput);
                 }
 
-                output = new JobOutput(file, fileOutput, consoleOutput, configuredExecutor.isConsoleLoggingEnabled());
+                output = new JobOutput(file, fileOutput, consoleOutput, configuredExecutor.isConsoleLoggingEnabled(), underlyingFileOutput);
             }
 
-            // 2: we need host info first, so we can log to the console something more useful
-            {
-                final HostInfo hostInfo;
+            // the job is prepared later (concurrently per host), but its execution can be scheduled right away
+            final Job job = new Job(jobId, target, output, jobExecute);
 
-                if (target.getHost() != null) {
-                    sshSession = sshConnect("ssh://" + target.getHost()).run();
-                    hostInfo = HostInfo.probeRemote(sshSession);
-                    // always relative to home directory of target (which is safest choice when using ssh/sftp, also works on windows)
-                    remoteProjectDir = "remote-build/" + absProjectDir.getFileName().toString();
-                } else {
-                    sshSession = null;
-                    remoteProjectDir = null;
-                    hostInfo = HostInfo.probeLocal();
-                }
+            jobs.add(job);
+        }
 
-                host = new HostImpl(target.getHost(), hostInfo, this.absProjectDir, this.relProjectDir, remoteProjectDir, sshSession);
-            }
+        // a job runs once all the jobs of the targets it depends on succeed (and is skipped if any do not)
+        this.linkUpstreamJobs(jobs);
 
+        // the longest jobs (as of their last run) are scheduled first, so a slow target doesn't hold up the end of the run
+        final JobDurations jobDurations = JobDurations.load(this.absProjectDir.resolve(".buildx-cache/durations.properties"));
+        final List<Job> scheduledJobs = jobDurations.order(jobs);
 
-            // 3: if container, probe it (which also downloads and prepares it, then log it)
-            if (target.getContainerImage() != null) {
-                ContainerInfo containerInfo = ContainerInfo.probe(host, target.getContainerImage());
-                container = new ContainerImpl(target.getContainerImage(), containerInfo);
+        for (Job job : scheduledJobs) {
+            if (job.getTarget().getHostPool() != null) {
+                jobsPerHostPool.computeIfAbsent(job.getTarget().getHostPool(), k -> new ArrayList<>()).add(job);
             } else {
-                // no container
-                container = null;
+                jobsPerHost.computeIfAbsent(job.getTarget().getHost(), k -> new ArrayList<>()).add(job);
             }
+        }
 
+        if (configuredFailFast) {
+            new FailFast(jobs);
+        }
 
-            // 4: log job info to the console & output file
-            log.info("");
-            for (String line : DisplayRenderer.renderJobLines(jobId, output.getFile(), host, target)) {
-                log.info(line);
-                IOUtils.write(line + "\n", output.getFileOutput(), StandardCharsets.UTF_8);
-            }
-            for (String line : DisplayRenderer.renderContainerLines(container)) {
-                log.info(line);
-                IOUtils.write(line + "\n", output.getFileOutput(), StandardCharsets.UTF_8);
+        if (configuredResultCache) {
+            // the tree is hashed before any host is synced or any job restores its artifacts into it
+            try {
+                final String projectHash = ResultCache.projectHash(this.absProjectDir, this.ignorePaths);
+                final ResultCache resultCache = new ResultCache(this.absProjectDir.resolve(".buildx-cache/results"), this.absProjectDir, projectHash);
+                jobs.forEach(v -> v.setResultCache(resultCache));
+            } catch (IOException e) {
+                log.warn("Unable to hash project {} (so no results will be cached): {}", this.absProjectDir, e.getMessage());
             }
-            log.info("");
-            IOUtils.write("\n", output.getFileOutput(), StandardCharsets.UTF_8);
-
-
-            // at this point, we are ready for anything "exec"'ed on the job to be redirected where it should be
-            host.redirectOutput(output);
-
-
-            // 5: if the host is remote, we need to rsync the project to the remote host (but only once per host)
-            if (host.isRemote()) {
-                if (!hostsSynced.contains(host)) {
-                    log.info("Syncing project to {}:{}", host, remoteProjectDir);
+        }
 
-                    jsync(localVolume(absProjectDir), sftpVolume(sshSession, remoteProjectDir), JsyncMode.MERGE)
-                        .verbose()
-                        .progress()
-                        .parents()
-                        .force()
-                        .delete()
-                        .ignores(this.ignorePaths)       // ignore will ignore it on both sides (e.g. target on remote side stays once its created)
-                        .run();
+        // probes of hosts & containers are cached between runs
+        final ProbeCache hostProbeCache;
+        final ProbeCache containerProbeCache;
+        if (this.probeCacheTtl != null && !this.probeCacheTtl.isZero()) {
+            hostProbeCache = new ProbeCache(this.absProjectDir.resolve(".buildx-cache/probes/hosts"), this.probeCacheTtl.toMillis(), configuredReprobe);
+            containerProbeCache = new ProbeCache(this.absProjectDir.resolve(".buildx-cache/probes/containers"), this.probeCacheTtl.toMillis(), configuredReprobe);
+        } else {
+            hostProbeCache = null;
+            containerProbeCache = null;
+        }
 
-                    // this host is done
-                    hostsSynced.add(host);
-                } else {
-                    log.info("Skipping sync of project to {}:{} (already done for another target)", host, remoteProjectDir);
+        // prepare each host concurrently, while jobs on a host are prepared in order (since they share its setup), so
+        // each job can start executing as soon as its own host is ready
+        final ExecutorService prepareExecutor = Executors.newFixedThreadPool(Math.max(1, jobsPerHost.size()));
+        final Map<String,HostPreparer> hostPreparers = new LinkedHashMap<>();
+        // every target on the same host shares one ssh session, which are all closed once the run ends
+        try (SshSessionPool sshSessionPool = new SshSessionPool()) {
+            final PrepareContext prepareContext = new PrepareContext(executeId, this.absProjectDir, this.relProjectDir, this.ignorePaths, sshSessionPool)
+                .setPrepareHostForContainers(this.prepareHostForContainers)
+                .setContainerSessions(this.containerSessions)
+                .setPullConcurrency(this.pullConcurrency)
+                .setSyncParallelism(this.syncParallelism)
+                .setHostProbeCache(hostProbeCache)
+                .setContainerProbeCache(containerProbeCache);
+
+            // the log of each job is compressed as soon as it completes, while the other jobs keep running
+            final LogCompressor logCompressor = this.compressLogs ? new LogCompressor(jobs) : null;
+            final MetricsWriter metricsWriter = this.metricsFile != null
+                ? new MetricsWriter(this.metricsFile, executeId, jobs).start(this.metricsInterval) : null;
+
+            try {
+                for (Map.Entry<String,List<Job>> entry : jobsPerHost.entrySet()) {
+                    final HostPreparer hostPreparer = hostPreparers.computeIfAbsent(entry.getKey(), k -> new HostPreparer(k, prepareContext));
+                    prepareExecutor.submit(() -> hostPreparer.prepareAll(entry.getValue()));
                 }
-            }
 
-
-            // 6: prepare the host for containers (but only once per host)
-            if (container != null) {
-                if (!hostsPreparedForContainers.contains(host)) {
-                    log.info("Preparing host {} for containers...", host);
-
-                    // does it even have podman or docker installed?
-                    if (host.getInfo().resolveContainerExe() == null) {
-                        throw new IllegalStateException("Host " + host.getHost() + " does not have either podman or docker installed");
+                // jobs in a pool are prepared once they are dispatched to a host (which may also have its own targets)
+                for (Map.Entry<String,List<Job>> entry : jobsPerHostPool.entrySet()) {
+                    final Map<String,HostPreparer> members = new LinkedHashMap<>();
+                    for (String member : this.hostPools.get(entry.getKey())) {
+                        members.put(member, hostPreparers.computeIfAbsent(member, k -> new HostPreparer(k, prepareContext)));
+                    }
+                    final HostPool hostPool = new HostPool(entry.getKey(), members);
+                    for (Job job : entry.getValue()) {
+                        hostPool.add(job);
+                        job.setHostPool(hostPool);
                     }
+                }
 
-                    // make the .buildx-cache dir on the host, that'll be used a the home dir for the container
-                    host.mkdir(".buildx-cache")
-                        .run();
+                // execute all the jobs
+                log.info(fixedWidthCenter("Executing Jobs", 100, '='));
 
-                    // now delegate the rest to what the user wants
-                    if (this.prepareHostForContainers != null) {
-                        for (HostExecute prepareHostForContainer : this.prepareHostForContainers) {
-                            prepareHostForContainer.execute(host);
-                        }
+                // every job is journaled as it completes, so a failed (or killed) run can be rerun with --rerun-failed
+                try (RunJournal journal = RunJournal.create(this.absProjectDir.resolve(".buildx-logs/" + executeId + "/" + RunJournal.FILE_NAME), jobs);
+                     JobWatchdog watchdog = new JobWatchdog(jobs, this.jobTimeout, this.stallTimeout).start()) {
+                    configuredExecutor.execute(scheduledJobs);
+                }
+            } finally {
+                // any preparation still going is stopped before its host preparer & ssh session are closed under it
+                prepareExecutor.shutdownNow();
+                try {
+                    if (!prepareExecutor.awaitTermination(1, TimeUnit.MINUTES)) {
+                        log.warn("Timed out waiting for hosts to stop being prepared");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                hostPreparers.values().forEach(HostPreparer::close);
+                // the rest of the log of each job is written out
+                jobs.forEach(v -> v.getOutput().close());
+                if (logCompressor != null) {
+                    logCompressor.close();
+                }
+                if (metricsWriter != null) {
+                    metricsWriter.close();
+                    try {
+                        metricsWriter.write();
+                    } catch (IOException e) {
+                        log.warn("Unable to write metrics {}: {}", metricsWriter.getFile(), e.getMessage());
                     }
-
-                    hostsPreparedForContainers.add(host);
-                } else {
-                    log.info("Skipping prepare of host {} for containers (already done for another target)", host);
                 }
             }
-
-
-            // we have all the info now we need to build the "local project" we are working with
-            project = new ProjectImpl(host, container, target);
-
-            // we are now ready to create a buildx job to run it
-            final Job job = new Job(jobId, host, container, target, project, output, jobExecute);
-
-            jobs.add(job);
         }
 
-        // execute all the jobs
-        log.info(fixedWidthCenter("Executing Jobs", 100, '='));
-
-        configuredExecutor.execute(jobs);
+        jobDurations.record(jobs);
+        try {
+            jobDurations.store();
+        } catch (IOException e) {
+            log.warn("Unable to store job durations {}: {}", jobDurations.getFile(), e.getMessage());
+        }
 
         // write out the results
         if (this.resultsFile != null) {
@@ -387,15 +686,78 @@ public class Buildx {
         DisplayRenderer.logResults(log, jobs);
     }
 
+    private void linkUpstreamJobs(List<Job> jobs) {
+        for (Job job : jobs) {
+            if (job.getTarget().getDependsOn() == null) {
+                continue;
+            }
+            for (String targetName : job.getTarget().getDependsOn()) {
+                // more than one target can have the same name (e.g. with different containers)
+                final List<Job> upstreamJobs = jobs.stream()
+                    .filter(v -> v.getTarget().getName().equals(targetName) && v != job)
+                    .collect(toList());
+
+                if (upstreamJobs.isEmpty()) {
+                    log.warn("Target {} depends on {}, but it is not being built (e.g. filtered out), so it will be ignored", job.getTarget(), targetName);
+                }
+
+                upstreamJobs.forEach(job::addUpstreamJob);
+            }
+        }
+
+        // a cycle would leave every job in it waiting forever
+        final Set<Job> visited = new HashSet<>();
+        for (Job job : jobs) {
+            this.checkNoCycle(job, new LinkedHashSet<>(), visited);
+        }
+    }
+
+    private void checkNoCycle(Job job, LinkedHashSet<Job> path, Set<Job> visited) {
+        if (path.contains(job)) {
+            final String cycle = path.stream()
+                .map(v -> v.getTarget().toString())
+                .collect(joining(" -> "));
+            throw new IllegalArgumentException("Targets depend on each other in a cycle: " + cycle + " -> " + job.getTarget());
+        }
+        if (!visited.add(job)) {
+            return;
+        }
+        path.add(job);
+        for (Job upstreamJob : job.getUpstreamJobs()) {
+            this.checkNoCycle(upstreamJob, path, visited);
+        }
+        path.remove(job);
+    }
+
     private JobExecutor configuredExecutor() {
         final boolean serial = Contexts.config().flag("serial").orElse(false);
         if (serial) {
             return new SerialJobExecutor();
         } else {
-            return new OnePerHostParallelJobExecutor();
+            // whichever parallel executor was set (e.g. slots per host)
+            return this.jobExecutor;
         }
     }
 
+    private List<Target> failedTargets(List<Target> targets) throws IOException {
+        final Path journalFile = RunJournal.findLatest(this.absProjectDir.resolve(".buildx-logs"));
+        if (journalFile == null) {
+            log.warn("No journal of a previous run found in .buildx-logs, so there are no failed targets to rerun");
+            return new ArrayList<>();
+        }
+
+        final Map<String,JobStatus> statuses = RunJournal.load(journalFile);
+        final List<Target> failedTargets = targets.stream()
+            .filter(v -> statuses.containsKey(targetKey(v))
+                && (statuses.get(targetKey(v)) == null || !statuses.get(targetKey(v)).isSuccess()))
+            .collect(toList());
+
+        log.info("Rerunning {} target(s) that did not succeed in the last run (according to {})", failedTargets.size(),
+            this.absProjectDir.relativize(journalFile));
+
+        return failedTargets;
+    }
+
     private List<Target> configuredTargets() {
         final String targetsFilterStr = Contexts.config().value("targets").orNull();
         final String tagsFilterStr = Contexts.config().value("tags").orNull();
@@ -417,7 +779,7 @@ public class Buildx {
         Path buildxDir = projectDir.resolve(".buildx");
         Files.createDirectories(buildxDir);
         // copy resources into it
-        for (String name : asList("host-exec.sh", "host-exec.bat", "container-exec.sh")) {
+        for (String name : asList("host-exec.sh", "host-exec.bat", "host-probe.sh", "container-exec.sh")) {
             final String resourceName = "/com/fizzed/buildx/"+name;
             // we need to test if the files are the same
             final Path targetFile = buildxDir.resolve(name);
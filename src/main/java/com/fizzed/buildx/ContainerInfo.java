@@ -1,13 +1,23 @@
 package com.fizzed.buildx;
 
+import com.fizzed.blaze.core.ExecutableNotFoundException;
+import com.fizzed.blaze.core.UnexpectedExitValueException;
 import com.fizzed.blaze.util.Timer;
 import com.fizzed.buildx.internal.HostImpl;
+import com.fizzed.buildx.internal.JfrEvents;
+import com.fizzed.buildx.internal.ProbeCache;
+import com.fizzed.buildx.internal.ProbeScript;
+import com.fizzed.buildx.internal.RecordingSystemExecutor;
 import com.fizzed.buildx.internal.SystemExecutorHostContainer;
 import com.fizzed.jne.*;
 import com.fizzed.jne.internal.SystemExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.LinkedHashMap;
+
+import static java.util.Optional.ofNullable;
+
 public class ContainerInfo {
     static private final Logger log = LoggerFactory.getLogger(ContainerInfo.class);
 
@@ -46,20 +56,112 @@ public class ContainerInfo {
     }
 
     static public ContainerInfo probe(HostImpl host, String containerImage) {
+        return probe(host, containerImage, null);
+    }
+
+    static public ContainerInfo probe(HostImpl host, String containerImage, ProbeCache probeCache) {
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.CONTAINER_PROBE).host(host.toString()).detail(containerImage)) {
+            return probe(host, containerImage, probeCache, event);
+        }
+    }
+
+    static private ContainerInfo probe(HostImpl host, String containerImage, ProbeCache probeCache, JfrEvents.Event event) {
         log.info("Probe container {} for os/arch/etc...", containerImage);
         final Timer timer = new Timer();
 
-        // we actually need to do one container command first, so we have it pulled
-        log.info("Testing container {}...", containerImage);
-        host.exec(host.getInfo().resolveContainerExe(), "run", containerImage, "sh", "-c", "uname > /dev/null").run();
-
-        // create a "JNE" executor that leverages the blaze exec locally or on ssh session
-        final SystemExecutor systemExecutor = new SystemExecutorHostContainer(host, containerImage);
+        // if the image is already present, its digest tells us if we've ever probed this exact image on this host
+        final String cacheKey = ofNullable(host.getHost()).orElse("local");
+        String digest = probeCache != null ? imageDigest(host, containerImage) : null;
+        if (digest != null) {
+            final ProbeCache.Entry cached = probeCache.load(cacheKey + "-" + digest, digest);
+            if (cached != null) {
+                final SystemExecutor systemExecutor = new RecordingSystemExecutor(new SystemExecutorHostContainer(host, containerImage), cached.getOutputs());
+                final PlatformInfo platformInfo = PlatformInfo.detect(systemExecutor, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+
+                log.info("Probed container {} for os/arch/etc (from cache in {})", containerImage, timer);
+                event.outcome("cached");
+
+                return new ContainerInfo(platformInfo);
+            }
+        }
+
+        // start the container once to collect everything JNE needs in a single shell (which also pulls the image),
+        // rather than a container start per file or command it looks at
+        final ProbeScript probeScript = runProbeScript(host, containerImage);
+
+        if (probeScript == null) {
+            // we actually need to do one container command first, so we have it pulled
+            log.info("Testing container {}...", containerImage);
+            host.exec(host.getInfo().resolveContainerExe(), "run", "--rm", containerImage, "sh", "-c", "uname > /dev/null").run();
+        }
+
+        // create a "JNE" executor that leverages the blaze exec locally or on ssh session (for anything the probe missed)
+        final RecordingSystemExecutor systemExecutor = new RecordingSystemExecutor(new SystemExecutorHostContainer(host, containerImage),
+            probeScript != null ? probeScript.getOutputs() : null);
         final PlatformInfo platformInfo = PlatformInfo.detect(systemExecutor, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
 
         log.info("Probed container {} for os/arch/etc (in {})", containerImage, timer);
+        event.outcome(probeScript != null ? "probe-script" : "per-command");
+
+        if (probeCache != null) {
+            // the image was pulled if it wasn't present before
+            if (digest == null) {
+                digest = imageDigest(host, containerImage);
+            }
+            if (digest != null) {
+                probeCache.store(cacheKey + "-" + digest, new ProbeCache.Entry(digest, System.currentTimeMillis(),
+                    new LinkedHashMap<>(), systemExecutor.getOutputs()));
+            }
+        }
 
         return new ContainerInfo(platformInfo);
     }
 
-}
\ No newline at end of file
+    /**
+     * Runs the probe script (from the project's .buildx dir, mounted read-only) in a single start of the container.
+     *
+     * @return the parsed output or null if it could not be run
+     */
+    static private ProbeScript runProbeScript(HostImpl host, String containerImage) {
+        try {
+            final String output = host.exec(host.getInfo().resolveContainerExe(), "run", "--rm",
+                    "-v", host.containerMountableDir() + "/.buildx:/buildx-probe:ro",
+                    containerImage, "sh", "/buildx-probe/host-probe.sh")
+                .pipeErrorToOutput()
+                .runCaptureOutput(false)
+                .toString();
+
+            final ProbeScript probeScript = ProbeScript.parse(output);
+
+            if (probeScript.getOutputs().isEmpty()) {
+                log.debug("Probe script in container {} did not produce any output (will probe one command at a time)", containerImage);
+                return null;
+            }
+
+            return probeScript;
+        } catch (Exception e) {
+            log.debug("Probe script in container {} failed (will probe one command at a time): {}", containerImage, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Gets the digest (image id) of a container image present on the host.
+     *
+     * @return the digest or null if the image isn't present (e.g. not pulled yet)
+     */
+    static public String imageDigest(HostImpl host, String containerImage) {
+        try {
+            final String digest = host.exec(host.getInfo().resolveContainerExe(), "image", "inspect", "--format", "{{.Id}}", containerImage)
+                .pipeErrorToOutput()
+                .runCaptureOutput(false)
+                .toString()
+                .trim();
+
+            return !digest.isEmpty() && !digest.contains(" ") ? digest : null;
+        } catch (ExecutableNotFoundException | UnexpectedExitValueException e) {
+            return null;
+        }
+    }
+
+}
@@ -9,6 +9,10 @@ import com.fizzed.blaze.system.ExecSession;
 import com.fizzed.blaze.util.CaptureOutput;
 import com.fizzed.blaze.util.Streamables;
 import com.fizzed.blaze.util.Timer;
+import com.fizzed.buildx.internal.JfrEvents;
+import com.fizzed.buildx.internal.ProbeCache;
+import com.fizzed.buildx.internal.ProbeScript;
+import com.fizzed.buildx.internal.RecordingSystemExecutor;
 import com.fizzed.buildx.internal.SystemExecutorSshSession;
 import com.fizzed.jne.*;
 import com.fizzed.jne.internal.SystemExecutor;
@@ -16,7 +20,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,14 +39,23 @@ public class HostInfo {
     private final String fileSeparator;
     private final String podmanVersion;
     private final String dockerVersion;
+    private final Integer cpus;
+    private final Long memoryBytes;
 
     public HostInfo(PlatformInfo platformInfo, String currentDir, String homeDir, String fileSeparator, String podmanVersion, String dockerVersion) {
+        this(platformInfo, currentDir, homeDir, fileSeparator, podmanVersion, dockerVersion, null, null);
+    }
+
+    public HostInfo(PlatformInfo platformInfo, String currentDir, String homeDir, String fileSeparator, String podmanVersion, String dockerVersion,
+                    Integer cpus, Long memoryBytes) {
         this.platformInfo = platformInfo;
         this.currentDir = currentDir;
         this.homeDir = homeDir;
         this.fileSeparator = fileSeparator;
         this.podmanVersion = podmanVersion;
         this.dockerVersion = dockerVersion;
+        this.cpus = cpus;
+        this.memoryBytes = memoryBytes;
     }
 
     public String getUname() {
@@ -89,6 +106,20 @@ public class HostInfo {
         return dockerVersion;
     }
 
+    /**
+     * The number of cpus (logical processors) of the host, or null if it could not be probed.
+     */
+    public Integer getCpus() {
+        return cpus;
+    }
+
+    /**
+     * The total physical memory of the host (in bytes), or null if it could not be probed.
+     */
+    public Long getMemoryBytes() {
+        return memoryBytes;
+    }
+
     public String resolveContainerExe() {
         if (this.podmanVersion != null) {
             return "podman";
@@ -100,32 +131,152 @@ public class HostInfo {
     }
 
     static public HostInfo probeLocal() {
+        return probeLocal(null);
+    }
+
+    static public HostInfo probeLocal(ProbeCache probeCache) {
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.HOST_PROBE).host("<local>")) {
+            return probeLocal(probeCache, event);
+        }
+    }
+
+    static private HostInfo probeLocal(ProbeCache probeCache, JfrEvents.Event event) {
         log.info("Probe host <local> for os/arch/etc...");
         final Timer timer = new Timer();
 
         final LocalSession localSession = new LocalSession(Contexts.currentContext());
-        final PlatformInfo platformInfo = PlatformInfo.detect(SystemExecutor.LOCAL, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+        final String fingerprint = probeCache != null ? fingerprint(localSession) : null;
+        final ProbeCache.Entry cached = probeCache != null ? probeCache.load("local", fingerprint) : null;
+        final RecordingSystemExecutor systemExecutor = new RecordingSystemExecutor(SystemExecutor.LOCAL,
+            cached != null ? cached.getOutputs() : null);
+
+        final PlatformInfo platformInfo = PlatformInfo.detect(systemExecutor, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
         String fileSeparator = File.separator;
         String currentDir = Paths.get(".").toAbsolutePath().normalize().toString();
         String homeDir = System.getProperty("user.home");
-        String podmanVersion = podmanVersion(localSession);
-        String dockerVersion = dockerVersion(localSession);
+        Integer cpus = Runtime.getRuntime().availableProcessors();
+        Long memoryBytes = localMemoryBytes();
+
+        final HostInfo hostInfo;
+        if (cached != null) {
+            hostInfo = new HostInfo(platformInfo, currentDir, homeDir, fileSeparator, cached.getFact("podmanVersion"), cached.getFact("dockerVersion"),
+                cpus, memoryBytes);
+
+            log.info("Probed host <local> for os/arch/etc (from cache in {})", timer);
+            event.outcome("cached");
+        } else {
+            String podmanVersion = podmanVersion(localSession);
+            String dockerVersion = dockerVersion(localSession);
+            hostInfo = new HostInfo(platformInfo, currentDir, homeDir, fileSeparator, podmanVersion, dockerVersion, cpus, memoryBytes);
+
+            log.info("Probed host <local> for os/arch/etc (in {})", timer);
+            event.outcome("probed");
 
-        log.info("Probed host <local> for os/arch/etc (in {})", timer);
+            storeCached(probeCache, "local", fingerprint, hostInfo, systemExecutor);
+        }
 
-        return new HostInfo(platformInfo, currentDir, homeDir, fileSeparator, podmanVersion, dockerVersion);
+        return hostInfo;
     }
 
     static public HostInfo probeRemote(SshSession sshSession) {
-        log.info("Probe host {} for os/arch/etc...", sshSession.uri().getHost());
+        return probeRemote(sshSession, null, null);
+    }
+
+    /**
+     * Probes a remote host, using the probe cache (if any) when it's still valid. Since the home & current dirs depend
+     * on who logs in, the cache key must tell apart every way of logging into the host (e.g. the target's user@host:port).
+     */
+    static public HostInfo probeRemote(SshSession sshSession, ProbeCache probeCache, String cacheKey) {
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.HOST_PROBE).host(sshSession.uri().getHost())) {
+            return probeRemote(sshSession, probeCache, cacheKey, event);
+        }
+    }
+
+    static private HostInfo probeRemote(SshSession sshSession, ProbeCache probeCache, String cacheKey, JfrEvents.Event event) {
+        final String host = sshSession.uri().getHost();
+        log.info("Probe host {} for os/arch/etc...", host);
         final Timer timer = new Timer();
 
-        String currentDir = null;
-        String fileSeperator = null;
+        // a valid cache entry needs just one cheap round trip to fingerprint the host vs. the many to probe it
+        final String fingerprint = probeCache != null ? fingerprint(sshSession) : null;
+        final ProbeCache.Entry cached = probeCache != null ? probeCache.load(cacheKey, fingerprint) : null;
+        if (cached != null) {
+            final SystemExecutor systemExecutor = new RecordingSystemExecutor(new SystemExecutorSshSession(sshSession), cached.getOutputs());
+            final PlatformInfo platformInfo = PlatformInfo.detect(systemExecutor, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+
+            log.info("Probed host {} for os/arch/etc (from cache in {})", host, timer);
+            event.outcome("cached");
+
+            return new HostInfo(platformInfo, cached.getFact("currentDir"), cached.getFact("homeDir"), cached.getFact("fileSeparator"),
+                cached.getFact("podmanVersion"), cached.getFact("dockerVersion"), parseInteger(cached.getFact("cpus")),
+                parseLong(cached.getFact("memoryBytes")));
+        }
+
+        // try to probe everything in a single round trip first, then fallback to a round trip per fact (e.g. windows)
+        final ProbeScript probeScript = runProbeScript(sshSession);
 
-        // create a "JNE" executor that leverages the blaze ssh session
-        final SystemExecutor systemExecutor = new SystemExecutorSshSession(sshSession);
+        // create a "JNE" executor that leverages the blaze ssh session (anything the probe script missed is executed)
+        final RecordingSystemExecutor systemExecutor = new RecordingSystemExecutor(new SystemExecutorSshSession(sshSession),
+            probeScript != null ? probeScript.getOutputs() : null);
         final PlatformInfo platformInfo = PlatformInfo.detect(systemExecutor, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+
+        final HostInfo hostInfo;
+        if (probeScript != null) {
+            hostInfo = new HostInfo(platformInfo, probeScript.getFact("currentDir"), probeScript.getFact("homeDir"),
+                probeScript.getFact("fileSeparator"), parseVersion(probeScript.getSuccessfulOutput("podman", "-v")),
+                parseVersion(probeScript.getSuccessfulOutput("docker", "-v")), parseInteger(probeScript.getFact("cpus")),
+                parseLong(probeScript.getFact("memoryBytes")));
+
+            log.info("Probed host {} for os/arch/etc (with probe script in {})", host, timer);
+            event.outcome("probe-script");
+        } else {
+            hostInfo = probeRemotePerCommand(sshSession, platformInfo);
+
+            log.info("Probed host {} for os/arch/etc (in {})", host, timer);
+            event.outcome("per-command");
+        }
+
+        storeCached(probeCache, cacheKey, fingerprint, hostInfo, systemExecutor);
+
+        return hostInfo;
+    }
+
+    /**
+     * Runs the probe script on the host, piped over stdin, so everything is collected in a single round trip.
+     *
+     * @return the parsed output or null if the script could not be run (e.g. there is no posix shell)
+     */
+    static private ProbeScript runProbeScript(SshSession sshSession) {
+        try {
+            final String output = sshExec(sshSession, "sh", "-s")
+                .pipeInput(Streamables.input(ProbeScript.load()))
+                .pipeErrorToOutput()
+                .runCaptureOutput(false)
+                .toString();
+
+            final ProbeScript probeScript = ProbeScript.parse(output);
+            final String uname = probeScript.getFact("fingerprint");
+
+            if (probeScript.getFact("currentDir") == null) {
+                log.debug("Probe script on host {} did not produce any facts (will probe one command at a time)", sshSession.uri().getHost());
+                return null;
+            }
+            if (uname != null && (uname.contains("CYGWIN") || uname.contains("MINGW") || uname.contains("MSYS"))) {
+                // a posix shell on windows (e.g. cygwin for rsync), but its paths & uname are not what we want
+                log.debug("Probe script on host {} ran in a windows posix emulation (will probe one command at a time)", sshSession.uri().getHost());
+                return null;
+            }
+
+            return probeScript;
+        } catch (Exception e) {
+            log.debug("Probe script on host {} failed (will probe one command at a time): {}", sshSession.uri().getHost(), e.getMessage());
+            return null;
+        }
+    }
+
+    static private HostInfo probeRemotePerCommand(SshSession sshSession, PlatformInfo platformInfo) {
+        String currentDir = null;
+        String fileSeperator = null;
         String homeDir = null;
 
         // detect the current path & file separator
@@ -174,13 +325,88 @@ public class HostInfo {
         String podmanVersion = podmanVersion(sshSession);
         String dockerVersion = dockerVersion(sshSession);
 
-        log.info("Probed host {} for os/arch/etc (in {})", sshSession.uri().getHost(), timer);
-
         return new HostInfo(platformInfo, currentDir, homeDir, fileSeperator, podmanVersion, dockerVersion);
     }
 
+    static private void storeCached(ProbeCache probeCache, String key, String fingerprint, HostInfo hostInfo, RecordingSystemExecutor systemExecutor) {
+        if (probeCache == null) {
+            return;
+        }
+        final Map<String,String> facts = new LinkedHashMap<>();
+        facts.put("currentDir", hostInfo.getCurrentDir());
+        facts.put("homeDir", hostInfo.getHomeDir());
+        facts.put("fileSeparator", hostInfo.getFileSeparator());
+        facts.put("podmanVersion", hostInfo.getPodmanVersion());
+        facts.put("dockerVersion", hostInfo.getDockerVersion());
+        facts.put("cpus", hostInfo.getCpus() != null ? hostInfo.getCpus().toString() : null);
+        facts.put("memoryBytes", hostInfo.getMemoryBytes() != null ? hostInfo.getMemoryBytes().toString() : null);
+        probeCache.store(key, new ProbeCache.Entry(fingerprint, System.currentTimeMillis(), facts, systemExecutor.getOutputs()));
+    }
+
+    /**
+     * A cheap fingerprint of a host (its "uname -a", or "ver" on windows) used to validate a cached probe is still
+     * accurate (e.g. the host wasn't upgraded or replaced).
+     */
+    static private String fingerprint(ExecSession execSession) {
+        try {
+            return execSession.newExec().command("uname").args("-a")
+                .pipeErrorToOutput()
+                .runCaptureOutput(false)
+                .toString()
+                .trim();
+        } catch (ExecutableNotFoundException | UnexpectedExitValueException e) {
+            // we might be on windows
+        }
+        try {
+            return execSession.newExec().command("cmd").args("/c", "ver")
+                .pipeErrorToOutput()
+                .runCaptureOutput(false)
+                .toString()
+                .trim();
+        } catch (ExecutableNotFoundException | UnexpectedExitValueException e) {
+            // not good, this didn't work either
+        }
+        return null;
+    }
+
     static private final Pattern VERSION_PATTERN = Pattern.compile(".*(\\d+\\.\\d+\\.\\d+).*");
 
+    static private String parseVersion(String output) {
+        if (output != null) {
+            // parse string for a version number of format X.X.X
+            Matcher matcher = VERSION_PATTERN.matcher(output.trim());
+            if (matcher.matches()) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    static private Integer parseInteger(String value) {
+        try {
+            return value != null ? Integer.valueOf(value.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static private Long parseLong(String value) {
+        try {
+            return value != null ? Long.valueOf(value.trim()) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static private Long localMemoryBytes() {
+        // only available on hotspot-based jvms (which is nearly all of them)
+        final OperatingSystemMXBean osBean = ManagementFactory.getOperatingSystemMXBean();
+        if (osBean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean)osBean).getTotalPhysicalMemorySize();
+        }
+        return null;
+    }
+
     static private String podmanVersion(ExecSession execSession) {
         try {
             // try uname, if any error, we might be on windows
@@ -190,12 +416,7 @@ public class HostInfo {
                 .pipeErrorToOutput()
                 .run();
 
-            // parse string for a version number of format X.X.X
-            String output = podmanOutput.toString().trim();
-            Matcher matcher = VERSION_PATTERN.matcher(output);
-            if (matcher.matches()) {
-                return matcher.group(1);
-            }
+            return parseVersion(podmanOutput.toString());
         } catch (ExecutableNotFoundException | UnexpectedExitValueException e) {
             // not good, this didn't work either'
         }
@@ -211,12 +432,7 @@ public class HostInfo {
                 .pipeErrorToOutput()
                 .run();
 
-            // parse string for a version number of format X.X.X
-            String output = dockerOutput.toString().trim();
-            Matcher matcher = VERSION_PATTERN.matcher(output);
-            if (matcher.matches()) {
-                return matcher.group(1);
-            }
+            return parseVersion(dockerOutput.toString());
         } catch (ExecutableNotFoundException | UnexpectedExitValueException e) {
             // not good, this didn't work either'
         }
@@ -4,9 +4,18 @@ import com.fizzed.blaze.Contexts;
 import com.fizzed.blaze.util.Timer;
 import com.fizzed.buildx.internal.ContainerImpl;
 import com.fizzed.buildx.internal.HostImpl;
+import com.fizzed.buildx.internal.HostPool;
 import com.fizzed.buildx.internal.ProjectImpl;
+import com.fizzed.buildx.internal.ResultCache;
+import com.fizzed.buildx.internal.Span;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.fizzed.blaze.util.TerminalHelper.fixedWidthCenter;
@@ -16,25 +25,40 @@ public class Job implements Runnable {
     private final Logger log = Contexts.logger();
 
     private final int id;
-    private final HostImpl host;
-    private final ContainerImpl container;
-    private final ProjectImpl project;
     private final Target target;
     private final JobOutput jobOutput;
     private final JobExecute jobExecute;
     private final AtomicReference<JobStatus> statusRef;
-    private Timer timer;
-    private String message;
+    private final CompletableFuture<Void> preparedFuture;
+    private final List<JobListener> listeners;
+    private final List<Job> upstreamJobs;
+    private final CompletableFuture<JobStatus> completedFuture;
+    private final List<Span> spans;
+    private final long createdAt;
+    // set once the job is cancelled or timed out (to the status it ends with)
+    private volatile JobStatus stoppedStatus;
+    // the thread running the job (guarded by the job's monitor, so it's never interrupted once handed back)
+    private Thread runThread;
+    private HostPool hostPool;
+    private ResultCache resultCache;
+    private volatile HostImpl host;
+    private volatile ContainerImpl container;
+    private volatile ProjectImpl project;
+    private volatile Timer timer;
+    private volatile String message;
 
-    public Job(int id, HostImpl host, ContainerImpl container, Target target, ProjectImpl project, JobOutput jobOutput, JobExecute jobExecute) {
+    public Job(int id, Target target, JobOutput jobOutput, JobExecute jobExecute) {
         this.id = id;
-        this.host = host;
-        this.container = container;
         this.target = target;
-        this.project = project;
         this.jobOutput = jobOutput;
         this.jobExecute = jobExecute;
         this.statusRef = new AtomicReference<>(JobStatus.PENDING);
+        this.preparedFuture = new CompletableFuture<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.upstreamJobs = new ArrayList<>();
+        this.completedFuture = new CompletableFuture<>();
+        this.spans = new CopyOnWriteArrayList<>();
+        this.createdAt = System.currentTimeMillis();
     }
 
     public int getId() {
@@ -53,6 +77,27 @@ public class Job implements Runnable {
         return project;
     }
 
+    /**
+     * The pool of hosts this job is dispatched to (whichever is free first), or null if its target is on a host.
+     */
+    public HostPool getHostPool() {
+        return hostPool;
+    }
+
+    public Job setHostPool(HostPool hostPool) {
+        this.hostPool = hostPool;
+        return this;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public Job setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+        return this;
+    }
+
     public Target getTarget() {
         return this.target;
     }
@@ -65,6 +110,151 @@ public class Job implements Runnable {
         return this.statusRef.get();
     }
 
+    /**
+     * The jobs that must complete (successfully) before this job can run.
+     */
+    public List<Job> getUpstreamJobs() {
+        return upstreamJobs;
+    }
+
+    public Job addUpstreamJob(Job upstreamJob) {
+        this.upstreamJobs.add(upstreamJob);
+        return this;
+    }
+
+    /**
+     * If every upstream job has completed, so this job can run without waiting on any of them.
+     */
+    public boolean isReady() {
+        for (Job upstreamJob : this.upstreamJobs) {
+            if (!upstreamJob.getStatus().isCompleted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public Job addListener(JobListener listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    public Job removeListener(JobListener listener) {
+        this.listeners.remove(listener);
+        return this;
+    }
+
+    /**
+     * Changes the status (but only if it still is the expected status) and notifies the listeners.
+     */
+    private boolean status(JobStatus expectedStatus, JobStatus status) {
+        if (!this.statusRef.compareAndSet(expectedStatus, status)) {
+            return false;
+        }
+        // anything waiting on the job to complete may well want to read its log
+        if (status.isCompleted() && this.jobOutput != null) {
+            this.jobOutput.flush();
+        }
+        for (JobListener listener : this.listeners) {
+            try {
+                listener.onStatusChanged(this, expectedStatus, status);
+            } catch (Throwable t) {
+                log.error("Job listener failed", t);
+            }
+        }
+        if (status.isCompleted()) {
+            this.completedFuture.complete(status);
+        }
+        return true;
+    }
+
+    public boolean isCancelled() {
+        return this.stoppedStatus == JobStatus.CANCELLED;
+    }
+
+    /**
+     * Cancels this job. A pending job is marked as cancelled and will never run, while a running job is interrupted
+     * (which kills its local processes) and has its containers removed (or its processes on a remote host killed, which
+     * closes their ssh exec channels), then is marked as cancelled once it stops.
+     */
+    public void cancel(String reason) {
+        if (this.getStatus().isCompleted()) {
+            return;
+        }
+
+        this.stoppedStatus = JobStatus.CANCELLED;
+
+        if (this.status(JobStatus.PENDING, JobStatus.CANCELLED)) {
+            this.message = reason;
+        } else {
+            this.stopRunning("Cancelling job: ", reason);
+        }
+
+        // a job that was never prepared never will be (it's skipped), so nothing waiting on it may wait forever
+        this.preparedFuture.completeExceptionally(new CancellationException(reason));
+
+        // it may also be blocked waiting on its upstream jobs or preparation
+        this.interruptRunThread();
+    }
+
+    /**
+     * Stops a running job that took too long (or stalled), the same way a running job is cancelled, except it is marked
+     * as timed out once it stops. Does nothing if the job isn't running.
+     */
+    public void timeOut(String reason) {
+        if (this.getStatus() != JobStatus.RUNNING || this.stoppedStatus != null) {
+            return;
+        }
+
+        this.stoppedStatus = JobStatus.TIMEOUT;
+        this.stopRunning("Timing out job: ", reason);
+        this.interruptRunThread();
+    }
+
+    private void stopRunning(String prefix, String reason) {
+        if (this.getStatus() == JobStatus.RUNNING) {
+            this.message = reason;
+            this.jobOutput.getConsoleOutput().println(prefix + reason);
+            final ProjectImpl project = this.project;
+            if (project != null) {
+                project.cancel();
+            }
+        }
+    }
+
+    synchronized private void interruptRunThread() {
+        if (this.runThread != null) {
+            this.runThread.interrupt();
+        }
+    }
+
+    synchronized private void runOn(Thread thread) {
+        this.runThread = thread;
+    }
+
+    /**
+     * Hands the thread that ran the job back, clearing any interrupt we caused so it can go on to run other jobs. Since
+     * the interrupt happens under the same monitor, none can arrive once the thread has been handed back.
+     */
+    synchronized private void handBackRunThread() {
+        this.runThread = null;
+        if (this.stoppedStatus != null) {
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * The phases of this job (e.g. queue, connect, probe, sync, pull, execute), in the order they were recorded.
+     */
+    public List<Span> getSpans() {
+        return this.spans;
+    }
+
+    public Job addSpan(Span span) {
+        this.spans.add(span);
+        return this;
+    }
+
     public Timer getTimer() {
         return this.timer;
     }
@@ -73,37 +263,191 @@ public class Job implements Runnable {
         return this.message;
     }
 
+    public boolean isPrepared() {
+        return this.preparedFuture.isDone() && !this.preparedFuture.isCompletedExceptionally();
+    }
+
+    /**
+     * Blocks until preparation of this job is done (successfully or not).
+     *
+     * @return true if it was prepared, false if preparation failed (or the job was cancelled before it was prepared)
+     */
+    public boolean awaitPrepared() throws InterruptedException {
+        try {
+            this.preparedFuture.get();
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Marks this job as ready to run once its host, container, and project have been prepared. Preparation happens
+     * concurrently with other jobs, so an executor may already be blocked in run() waiting on this.
+     */
+    public void prepared(HostImpl host, ContainerImpl container, ProjectImpl project) {
+        this.host = host;
+        this.container = container;
+        this.project = project;
+        this.preparedFuture.complete(null);
+    }
+
+    public void prepareFailed(Throwable t) {
+        this.preparedFuture.completeExceptionally(t);
+    }
+
     @Override
     public void run() {
+        // a cancelled job never runs
+        if (this.stoppedStatus != null) {
+            return;
+        }
+
+        // how long the job waited for its turn (e.g. behind other jobs on the same host)
+        this.addSpan(new Span("queue", this.target.getHostPool() != null ? "pool:" + this.target.getHostPool() : this.target.getHost(),
+            false, this.createdAt, System.currentTimeMillis()));
+
+        this.runOn(Thread.currentThread());
+        try {
+            this.runUnlessCancelled();
+        } finally {
+            this.handBackRunThread();
+        }
+    }
+
+    private void runUnlessCancelled() {
+        // executors only run a job once it's ready, but block until the upstream jobs complete just in case
+        for (Job upstreamJob : this.upstreamJobs) {
+            JobStatus upstreamStatus;
+            try {
+                upstreamStatus = upstreamJob.completedFuture.get();
+            } catch (Throwable t) {
+                upstreamStatus = JobStatus.FAILED;
+            }
+            if (this.stoppedStatus != null) {
+                return;
+            }
+            if (!upstreamStatus.isSuccess()) {
+                this.timer = new Timer();
+                this.message = "Upstream job #" + upstreamJob.getId() + " for " + upstreamJob.getTarget() + " did not succeed ("
+                    + upstreamStatus.toString().toLowerCase() + ")";
+                this.timer.stop();
+                this.status(JobStatus.PENDING, JobStatus.SKIPPED);
+                return;
+            }
+        }
+
+        // block until preparation of this job is done (e.g. its host is synced, its container probed)
         try {
+            this.preparedFuture.get();
+        } catch (Throwable t) {
+            if (this.stoppedStatus != null) {
+                return;
+            }
+            final Throwable cause = (t instanceof ExecutionException && t.getCause() != null) ? t.getCause() : t;
             this.timer = new Timer();
-            this.statusRef.set(JobStatus.RUNNING);
+            this.failed("Preparation failed: " + cause.getMessage(), cause);
+            this.timer.stop();
+            this.status(JobStatus.PENDING, JobStatus.FAILED);
+            return;
+        }
+
+        // a job whose inputs are unchanged since it last succeeded doesn't need to run again
+        final String fingerprint = this.resultCache != null ? this.fingerprint() : null;
+        if (fingerprint != null) {
+            final Span restoreSpan = Span.start("cache-restore", this.hostName());
+            try {
+                this.timer = new Timer();
+                if (this.resultCache.restore(this, fingerprint)) {
+                    this.message = "Unchanged since a previous success (fingerprint " + fingerprint.substring(0, 12) + ")";
+                    this.timer.stop();
+                    this.addSpan(restoreSpan.end());
+                    this.project.close();
+                    this.status(JobStatus.PENDING, JobStatus.CACHED);
+                    return;
+                }
+            } catch (Exception e) {
+                log.warn("Unable to restore cached result of job #{} for {} (will run it): {}", this.id, this.target, e.getMessage());
+            }
+            this.addSpan(restoreSpan.end());
+        }
 
+        this.timer = new Timer();
+        if (!this.status(JobStatus.PENDING, JobStatus.RUNNING)) {
+            // cancelled just before it started
+            this.timer.stop();
+            return;
+        }
+
+        // the completed status is only published once the job is cleaned up, so nothing waiting on it races the cleanup
+        JobStatus completedStatus = JobStatus.FAILED;
+        final Span executeSpan = Span.start("execute", this.hostName());
+        try {
             this.jobExecute.execute(this.host, this.project, this.target);
 
-            this.statusRef.set(JobStatus.SUCCESS);
+            completedStatus = JobStatus.SUCCESS;
         } catch (SkipException e) {
-            this.statusRef.set(JobStatus.SKIPPED);
+            completedStatus = JobStatus.SKIPPED;
             this.message = e.getMessage();
         } catch (Throwable t) {
-            this.statusRef.set(JobStatus.FAILED);
-            this.message = t.getMessage();
-
-            // if we're not parallel, log the stacktrace to the console too
-            if (this.jobOutput.isConsoleLogging()) {
-                log.error(fixedWidthCenter("Job #" + this.getId() + " Failed", 100, '#'));
-                log.error("Error executing target {}: {}", this.target, t.getMessage());
+            final JobStatus stoppedStatus = this.stoppedStatus;
+            if (stoppedStatus != null) {
+                // the failure is just the result of being interrupted
+                completedStatus = stoppedStatus;
+                t.printStackTrace(this.jobOutput.getConsoleOutput());
+            } else {
+                this.failed(t.getMessage(), t);
+            }
+        } finally {
+            this.addSpan(executeSpan.end());
+            try {
+                this.project.close();
+            } finally {
+                this.timer.stop();
+                if (completedStatus == JobStatus.SUCCESS && fingerprint != null) {
+                    final Span storeSpan = Span.start("cache-store", this.hostName());
+                    try {
+                        this.resultCache.store(this, fingerprint);
+                    } catch (Exception e) {
+                        log.warn("Unable to cache result of job #{} for {}: {}", this.id, this.target, e.getMessage());
+                    }
+                    this.addSpan(storeSpan.end());
+                }
+                this.status(JobStatus.RUNNING, completedStatus);
             }
+        }
+    }
 
-            // always dump the stacktrace to the log
-            t.printStackTrace(this.jobOutput.getConsoleOutput());
+    private String hostName() {
+        return this.host != null ? this.host.getHost() : null;
+    }
 
-            // log footer to console
-            if (this.jobOutput.isConsoleLogging()) {
-                log.error(fixedWidthLeft("", 100, '#'));
-            }
-        } finally {
-            this.timer.stop();
+    private String fingerprint() {
+        try {
+            final String imageDigest = this.container != null
+                ? ContainerInfo.imageDigest(this.host, this.target.getContainerImage()) : null;
+            return this.resultCache.fingerprint(this, imageDigest, this.jobExecute.cacheKey(this.target));
+        } catch (Exception e) {
+            log.warn("Unable to fingerprint job #{} for {} (so it will not be cached): {}", this.id, this.target, e.getMessage());
+            return null;
+        }
+    }
+
+    private void failed(String message, Throwable t) {
+        this.message = message;
+
+        // if we're not parallel, log the stacktrace to the console too
+        if (this.jobOutput.isConsoleLogging()) {
+            log.error(fixedWidthCenter("Job #" + this.getId() + " Failed", 100, '#'));
+            log.error("Error executing target {}: {}", this.target, message);
+        }
+
+        // always dump the stacktrace to the log
+        t.printStackTrace(this.jobOutput.getConsoleOutput());
+
+        // log footer to console
+        if (this.jobOutput.isConsoleLogging()) {
+            log.error(fixedWidthLeft("", 100, '#'));
         }
     }
 
@@ -4,4 +4,14 @@ public interface JobExecute {
 
     void execute(Host host, Project project, Target target) throws Exception;
 
+    /**
+     * Anything else (besides the project, target and container image) the result of executing a target depends on,
+     * such as a version of a tool on the host. Only used if the result cache is enabled (see Buildx.resultCache).
+     *
+     * @return the key or null if there is nothing else
+     */
+    default String cacheKey(Target target) {
+        return null;
+    }
+
 }
\ No newline at end of file
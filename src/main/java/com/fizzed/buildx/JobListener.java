@@ -0,0 +1,10 @@
+package com.fizzed.buildx;
+
+/**
+ * Notified of every change in the status of a job (on whichever thread changed it).
+ */
+public interface JobListener {
+
+    void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status);
+
+}
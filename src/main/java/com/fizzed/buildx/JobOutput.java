@@ -1,26 +1,44 @@
 package com.fizzed.buildx;
 
+import com.fizzed.buildx.internal.OutputMeter;
+
 import java.io.PrintStream;
 import java.nio.file.Path;
 
 public class JobOutput {
 
-    private final Path file;
+    private volatile Path file;
     private final PrintStream fileOutput;
     private final PrintStream consoleOutput;
     private final boolean consoleLogging;
+    private final OutputMeter meter;
 
     public JobOutput(Path file, PrintStream fileOutput, PrintStream consoleOutput, boolean consoleLogging) {
+        this(file, fileOutput, consoleOutput, consoleLogging, null);
+    }
+
+    /**
+     * @param meter if not null, what all the output of the job flows through (to tell if it's still making progress)
+     */
+    public JobOutput(Path file, PrintStream fileOutput, PrintStream consoleOutput, boolean consoleLogging, OutputMeter meter) {
         this.file = file;
         this.fileOutput = fileOutput;
         this.consoleOutput = consoleOutput;
         this.consoleLogging = consoleLogging;
+        this.meter = meter;
     }
 
     public Path getFile() {
         return file;
     }
 
+    /**
+     * Points at the log file once it is moved (e.g. compressed).
+     */
+    public void setFile(Path file) {
+        this.file = file;
+    }
+
     public PrintStream getFileOutput() {
         return fileOutput;
     }
@@ -33,4 +51,21 @@ public class JobOutput {
         return consoleLogging;
     }
 
+    public OutputMeter getMeter() {
+        return meter;
+    }
+
+    /**
+     * Blocks until all the output so far is written to the log file.
+     */
+    public void flush() {
+        this.consoleOutput.flush();
+        this.fileOutput.flush();
+    }
+
+    public void close() {
+        this.consoleOutput.close();
+        this.fileOutput.close();
+    }
+
 }
\ No newline at end of file
@@ -7,10 +7,18 @@ public enum JobStatus {
     // completed
     SUCCESS,
     SKIPPED,
-    FAILED;
+    FAILED,
+    CANCELLED,
+    TIMEOUT,
+    CACHED;
 
     public boolean isCompleted() {
-        return this == SUCCESS || this == SKIPPED || this == FAILED;
+        return this == SUCCESS || this == SKIPPED || this == FAILED || this == CANCELLED || this == TIMEOUT || this == CACHED;
+    }
+
+    // a cached result is as good as a success (e.g. for the jobs that depend on it)
+    public boolean isSuccess() {
+        return this == SUCCESS || this == CACHED;
     }
 
 }
\ No newline at end of file
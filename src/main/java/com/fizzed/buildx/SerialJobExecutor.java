@@ -1,5 +1,6 @@
 package com.fizzed.buildx;
 
+import com.fizzed.buildx.internal.ReadyQueue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,10 +22,19 @@ public class SerialJobExecutor implements JobExecutor {
         log.info("Executing {} job(s) with {} strategy", jobs.size(), this.getClass().getSimpleName());
         log.info("");
 
-        for (Job job : jobs) {
+        // in order, except a job is held back until the jobs it depends on have run
+        final ReadyQueue readyJobs = new ReadyQueue();
+        jobs.forEach(readyJobs::add);
+
+        Job job;
+        while ((job = readyJobs.take()) != null) {
             log.info(fixedWidthCenter("Running Job #" + job.getId(), 100, '='));
             log.info("target: {}", job.getTarget());
-            job.run();
+            if (job.getHostPool() != null) {
+                job.getHostPool().executeOnAny(job);
+            } else {
+                job.run();
+            }
         }
     }
 
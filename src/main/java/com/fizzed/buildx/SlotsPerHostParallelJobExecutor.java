@@ -0,0 +1,253 @@
+package com.fizzed.buildx;
+
+import com.fizzed.buildx.internal.HostPool;
+import com.fizzed.buildx.internal.JfrEvents;
+import com.fizzed.buildx.internal.JobDashboard;
+import com.fizzed.buildx.internal.ReadyQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Executes jobs in parallel across hosts, as well as up to N jobs at once on each host (its slots). A host has a single
+ * slot unless it's overridden with {@link #hostSlots(String, int)}, or {@link #autoSlots(boolean)} derives it from its
+ * probed cpus & memory (e.g. a 64 core host with plenty of memory can run many container builds at once, while a small
+ * one still runs one at a time).
+ * <p>
+ * Every slot on a host shares the one copy of the project on it (remote-build/&lt;project&gt; on a remote host, or the
+ * project itself locally), which every container mounts as /project. Jobs that write to the project (e.g. a maven or
+ * make build into target/) overwrite each other's output if they run at once, so only give a host more than one slot
+ * for jobs that don't (e.g. ones that build into a directory of their own).
+ */
+public class SlotsPerHostParallelJobExecutor implements JobExecutor {
+    static final private Logger log = LoggerFactory.getLogger(SlotsPerHostParallelJobExecutor.class);
+
+    private int cpusPerSlot;
+    private long memoryBytesPerSlot;
+    private int maxSlots;
+    private boolean autoSlots;
+    private final Map<String,Integer> hostSlots;
+
+    public SlotsPerHostParallelJobExecutor() {
+        this.cpusPerSlot = 4;
+        this.memoryBytesPerSlot = 4L * 1024L * 1024L * 1024L;
+        this.maxSlots = 16;
+        this.autoSlots = false;
+        this.hostSlots = new HashMap<>();
+    }
+
+    /**
+     * Sets how many cpus each slot needs (when the slots of a host are from its probed cpus).
+     *
+     * @param cpusPerSlot the number of cpus per slot
+     * @return the current instance for method chaining
+     */
+    public SlotsPerHostParallelJobExecutor cpusPerSlot(int cpusPerSlot) {
+        this.cpusPerSlot = cpusPerSlot;
+        return this;
+    }
+
+    /**
+     * Sets how much memory each slot needs (when the slots of a host are from its probed memory).
+     *
+     * @param memoryBytesPerSlot the memory (in bytes) per slot
+     * @return the current instance for method chaining
+     */
+    public SlotsPerHostParallelJobExecutor memoryBytesPerSlot(long memoryBytesPerSlot) {
+        this.memoryBytesPerSlot = memoryBytesPerSlot;
+        return this;
+    }
+
+    /**
+     * Sets the max slots of any host (when the slots of a host are from its probed cpus & memory).
+     *
+     * @param maxSlots the max slots per host
+     * @return the current instance for method chaining
+     */
+    public SlotsPerHostParallelJobExecutor maxSlots(int maxSlots) {
+        this.maxSlots = maxSlots;
+        return this;
+    }
+
+    /**
+     * Derives the slots of each host (unless overridden) from its probed cpus & memory, rather than a single slot. Off
+     * by default, since the jobs in the slots of a host all share the same copy of the project on it.
+     *
+     * @param autoSlots true to derive the slots of each host from its cpus & memory
+     * @return the current instance for method chaining
+     */
+    public SlotsPerHostParallelJobExecutor autoSlots(boolean autoSlots) {
+        this.autoSlots = autoSlots;
+        return this;
+    }
+
+    /**
+     * Overrides the number of slots of a specific host.
+     *
+     * @param host the host (as the target has it), or "local" for the local host
+     * @param slots the number of jobs that can execute at once on the host
+     * @return the current instance for method chaining
+     */
+    public SlotsPerHostParallelJobExecutor hostSlots(String host, int slots) {
+        this.hostSlots.put(host, slots);
+        return this;
+    }
+
+    /**
+     * Calculates the default slots of a host from its cpus & memory (whichever runs out first).
+     */
+    public int defaultSlots(HostInfo hostInfo) {
+        int slots = this.maxSlots;
+        if (hostInfo.getCpus() != null) {
+            slots = Math.min(slots, hostInfo.getCpus() / Math.max(1, this.cpusPerSlot));
+        }
+        if (hostInfo.getMemoryBytes() != null) {
+            slots = (int)Math.min(slots, hostInfo.getMemoryBytes() / Math.max(1L, this.memoryBytesPerSlot));
+        }
+        if (hostInfo.getCpus() == null && hostInfo.getMemoryBytes() == null) {
+            // nothing probed, so stay on the safe side
+            slots = 1;
+        }
+        return Math.max(1, slots);
+    }
+
+    public class HostSlots implements Runnable {
+        private final String host;
+        private final List<Job> jobs;
+        private final ReadyQueue readyJobs;
+
+        public HostSlots(String host) {
+            this.host = host;
+            this.jobs = new ArrayList<>();
+            this.readyJobs = new ReadyQueue();
+        }
+
+        public void add(Job job) {
+            this.jobs.add(job);
+            this.readyJobs.add(job);
+        }
+
+        private int resolveSlots() throws InterruptedException {
+            final Integer overrideSlots = hostSlots.get(this.host);
+            if (overrideSlots != null) {
+                return Math.max(1, overrideSlots);
+            }
+
+            if (!autoSlots) {
+                return 1;
+            }
+
+            // the host is only probed once a job on it is prepared (no job can execute before then anyway)
+            for (Job job : this.jobs) {
+                // e.g. a job cancelled before it was prepared
+                if (job.getStatus().isCompleted()) {
+                    continue;
+                }
+                if (job.awaitPrepared()) {
+                    return defaultSlots(job.getHost().getInfo());
+                }
+            }
+
+            return 1;
+        }
+
+        public void run() {
+            try {
+                final int slots = this.resolveSlots();
+
+                log.debug("Executing {} job(s) on host {} with {} slot(s)", this.jobs.size(), this.host, slots);
+
+                // each slot takes the next ready job (in order) as soon as it is free
+                final int slotCount = Math.min(slots, this.jobs.size());
+                final ExecutorService slotExecutor = Executors.newFixedThreadPool(slotCount);
+                try {
+                    for (int i = 0; i < slotCount; i++) {
+                        slotExecutor.submit(() -> {
+                            Job job;
+                            while ((job = this.readyJobs.take()) != null) {
+                                try {
+                                    log.debug("Executing job {} on target {}", job.getId(), job.getTarget());
+                                    job.run();
+                                } catch (Throwable t) {
+                                    log.error("This throwable should have been caught by BuildxJob.run()", t);
+                                }
+                            }
+                            return null;
+                        });
+                    }
+                } finally {
+                    slotExecutor.shutdown();
+                }
+
+                slotExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                log.debug("Interrupted while executing jobs on host {}", this.host);
+            }
+        }
+    }
+
+    @Override
+    public boolean isConsoleLoggingEnabled() {
+        return false;
+    }
+
+    @Override
+    public void execute(List<Job> jobs) throws Exception {
+        // we need to generate a list of jobs PER host (retain ordering with linked hash map)
+        final Map<String,HostSlots> jobsPerHost = new LinkedHashMap<>();
+
+        // jobs in a pool of hosts are dispatched by the pool itself, to whichever of its hosts frees up first
+        final Set<HostPool> hostPools = new LinkedHashSet<>();
+        final List<Runnable> hostPoolWorkers = new ArrayList<>();
+
+        for (Job job : jobs) {
+            if (job.getHostPool() != null) {
+                if (hostPools.add(job.getHostPool())) {
+                    hostPoolWorkers.addAll(job.getHostPool().workers());
+                }
+                continue;
+            }
+            String host = ofNullable(job.getTarget().getHost()).orElse("local");
+            HostSlots hostJobs = jobsPerHost.computeIfAbsent(host, HostSlots::new);
+            hostJobs.add(job);
+        }
+
+        log.info("");
+        log.info("Executing {} job(s) on {} host(s) and {} host pool(s) with {} strategy", jobs.size(), jobsPerHost.size(),
+            hostPools.size(), this.getClass().getSimpleName());
+        log.info("");
+
+        // listening to the jobs must start before any of them execute
+        final JobDashboard dashboard = new JobDashboard(jobs);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(jobsPerHost.size() + hostPoolWorkers.size());
+        try {
+            for (HostSlots v : jobsPerHost.values()) {
+                executor.submit(v);
+            }
+            for (Runnable v : hostPoolWorkers) {
+                executor.submit(v);
+            }
+
+            // wait for all the underlying jobs to finish
+            try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.EXECUTOR_WAIT).detail(this.getClass().getSimpleName())) {
+                dashboard.waitForCompletion();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
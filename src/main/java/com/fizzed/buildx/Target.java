@@ -1,5 +1,7 @@
 package com.fizzed.buildx;
 
+import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -11,8 +13,12 @@ public class Target {
     private final String name;
     private String description;
     private String host;
+    private String hostPool;
     private String containerImage;
     private Set<String> tags;
+    private Set<String> dependsOn;
+    private Duration timeout;
+    private Set<String> artifacts;
     private Map<String,Object> data;
 
     public Target(String name) {
@@ -51,6 +57,15 @@ public class Target {
         return this;
     }
 
+    public String getHostPool() {
+        return hostPool;
+    }
+
+    public Target setHostPool(String hostPool) {
+        this.hostPool = hostPool;
+        return this;
+    }
+
     public String getContainerImage() {
         return containerImage;
     }
@@ -83,6 +98,43 @@ public class Target {
         return this;
     }
 
+    public Set<String> getDependsOn() {
+        return dependsOn;
+    }
+
+    public Target setDependsOn(String... targetNames) {
+        if (targetNames != null && targetNames.length > 0) {
+            if (this.dependsOn == null) {
+                this.dependsOn = new LinkedHashSet<>();
+            }
+            this.dependsOn.addAll(asList(targetNames));
+        }
+        return this;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public Target setTimeout(Duration timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public Set<String> getArtifacts() {
+        return artifacts;
+    }
+
+    public Target setArtifacts(String... paths) {
+        if (paths != null && paths.length > 0) {
+            if (this.artifacts == null) {
+                this.artifacts = new TreeSet<>();
+            }
+            this.artifacts.addAll(asList(paths));
+        }
+        return this;
+    }
+
     public Map<String,Object> getData() {
         return data;
     }
@@ -0,0 +1,236 @@
+package com.fizzed.buildx.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes the log of a job on a dedicated thread, so a job producing lots of output (e.g. a verbose native build) isn't
+ * held up by writes to disk. Writes are coalesced into chunks, which are handed to the writer thread through a bounded
+ * queue (a job that outpaces the disk will block, rather than use an unbounded amount of memory). A partial chunk is
+ * handed over every so often, so the log on disk is never far behind, and flush() blocks until everything written so
+ * far is on disk.
+ */
+public class AsyncLogWriter extends OutputStream {
+
+    static private final int CHUNK_SIZE = 16384;
+    static private final int MAX_CHUNKS = 64;
+    static private final long FLUSH_INTERVAL_MILLIS = 250L;
+    static private final Object CLOSE = new Object();
+
+    private final OutputStream out;
+    private final BlockingQueue<Object> queue;
+    private final Thread writer;
+    private final ReentrantLock lock;
+    private byte[] chunk;
+    private int chunkLength;
+    private volatile IOException failure;
+    private boolean closed;
+
+    public AsyncLogWriter(OutputStream out, String name) {
+        this.out = out;
+        this.queue = new ArrayBlockingQueue<>(MAX_CHUNKS);
+        this.chunk = new byte[CHUNK_SIZE];
+        this.lock = new ReentrantLock();
+        this.writer = new Thread(this::writeLoop, name);
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[] { (byte)b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        this.lock.lock();
+        try {
+            this.checkOpen();
+            while (len > 0) {
+                final int n = Math.min(len, this.chunk.length - this.chunkLength);
+                System.arraycopy(b, off, this.chunk, this.chunkLength, n);
+                this.chunkLength += n;
+                off += n;
+                len -= n;
+                if (this.chunkLength == this.chunk.length) {
+                    this.handOff();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until everything written so far is on disk.
+     */
+    @Override
+    public void flush() throws IOException {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        this.lock.lock();
+        try {
+            this.checkOpen();
+            this.handOff();
+            this.enqueue(flushed);
+        } finally {
+            this.lock.unlock();
+        }
+        awaitUninterruptibly(flushed);
+        this.checkFailure();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.lock();
+        try {
+            if (this.closed) {
+                return;
+            }
+            this.handOff();
+            this.enqueue(CLOSE);
+            this.closed = true;
+        } finally {
+            this.lock.unlock();
+        }
+        boolean interrupted = false;
+        while (this.writer.isAlive()) {
+            try {
+                this.writer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        this.checkFailure();
+    }
+
+    private void checkOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Log writer closed");
+        }
+        this.checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    // must hold the lock
+    private void handOff() {
+        if (this.chunkLength > 0) {
+            final byte[] bytes = this.chunkLength == this.chunk.length ? this.chunk : Arrays.copyOf(this.chunk, this.chunkLength);
+            this.enqueue(bytes);
+            this.chunk = new byte[CHUNK_SIZE];
+            this.chunkLength = 0;
+        }
+    }
+
+    private void enqueue(Object item) {
+        // the log must not lose output just because the job is being interrupted (e.g. cancelled)
+        boolean interrupted = false;
+        while (true) {
+            try {
+                this.queue.put(item);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static private void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Object item = this.queue.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    // nothing for a while, so write out whatever is partially buffered (but never wait on the lock, since
+                    // a job holding it may be blocked on the queue, waiting for us)
+                    if (this.lock.tryLock()) {
+                        try {
+                            this.handOffIfIdle();
+                        } finally {
+                            this.lock.unlock();
+                        }
+                    }
+                    continue;
+                }
+                if (item == CLOSE) {
+                    break;
+                }
+                this.writeItem(item);
+            }
+        } catch (InterruptedException e) {
+            // only the jvm exiting would interrupt us
+        } finally {
+            try {
+                this.out.close();
+            } catch (IOException e) {
+                if (this.failure == null) {
+                    this.failure = e;
+                }
+            }
+        }
+    }
+
+    // must hold the lock
+    private void handOffIfIdle() {
+        if (this.chunkLength > 0 && this.queue.remainingCapacity() > 0) {
+            this.handOff();
+        }
+    }
+
+    private void writeItem(Object item) {
+        if (item instanceof CountDownLatch) {
+            try {
+                if (this.failure == null) {
+                    this.out.flush();
+                }
+            } catch (IOException e) {
+                this.failure = e;
+            } finally {
+                ((CountDownLatch)item).countDown();
+            }
+            return;
+        }
+        try {
+            if (this.failure == null) {
+                this.out.write((byte[])item);
+                if (this.queue.isEmpty()) {
+                    this.out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // nothing else can be written, so the failure is reported by the next write (or flush) of the job
+            this.failure = e;
+        }
+    }
+
+}
@@ -13,14 +13,14 @@ import java.text.DecimalFormat;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static com.fizzed.blaze.Systems.exec;
 import static com.fizzed.blaze.util.TerminalHelper.*;
 import static com.fizzed.blaze.util.TerminalHelper.resetCode;
 import static com.fizzed.buildx.internal.Utils.*;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.joining;
 
 public class DisplayRenderer {
 
@@ -67,6 +67,9 @@ public class DisplayRenderer {
             }
             sb.append("\n");
             sb.append("  status: ").append(stringifyLowerCase(job.getStatus(), "unknown")).append("\n");
+            if (!job.getSpans().isEmpty()) {
+                sb.append("  phases: ").append(renderSpans(job.getSpans())).append("\n");
+            }
             sb.append("\n");
         }
 
@@ -81,8 +84,9 @@ public class DisplayRenderer {
         if (logFile != null) {
             lines.add("  log file: " + logFile);
         }
-        lines.add("  host: " + host);
-        if (host.getInfo() != null) {
+        // host may not exist if the job failed to be prepared
+        lines.add("  host: " + ofNullable(host).map(HostImpl::toString).orElse(stringify(target.getHost(), "<local>")));
+        if (host != null && host.getInfo() != null) {
             lines.add("    os: " + stringifyLowerCase(host.getInfo().getOs(), "<unknown>"));
             lines.add("    arch: " + stringifyLowerCase(host.getInfo().getArch(), "<unknown>"));
             lines.add("    name: " + stringify(host.getInfo().getDisplayName(), "<unknown>"));
@@ -126,6 +130,12 @@ public class DisplayRenderer {
         return lines;
     }
 
+    static public String renderSpans(List<Span> spans) {
+        return spans.stream()
+            .map(Span::toString)
+            .collect(joining(" "));
+    }
+
     static public void logResults(Logger log, List<Job> jobs) {
         log.info("");
         log.info(fixedWidthCenter("Buildx Report", 100, '='));
@@ -133,7 +143,8 @@ public class DisplayRenderer {
 
         for (Job job : jobs) {
             final Target target = job.getTarget();
-            final long durationMillis = job.getTimer().elapsed();
+            // a job cancelled before it started never had a timer
+            final long durationMillis = job.getTimer() != null ? job.getTimer().elapsed() : 0L;
             final double durationSecs = (double)durationMillis/1000d;
 
             String statusMessage = "";
@@ -147,6 +158,15 @@ public class DisplayRenderer {
                 case SKIPPED:
                     statusMessage = cyanCode() + "[skipped]" + resetCode();
                     break;
+                case CACHED:
+                    statusMessage = greenCode() + "[cached]" + resetCode();
+                    break;
+                case TIMEOUT:
+                    statusMessage = redCode() + "[timeout]" + resetCode();
+                    break;
+                case CANCELLED:
+                    statusMessage = magentaCode() + "[cancelled]" + resetCode();
+                    break;
             }
 
             final String name = ofNullable(target.getName()).orElse("");
@@ -163,9 +183,30 @@ public class DisplayRenderer {
 
         log.info("");
 
+        // where the time went, per job and in total (so it's clear whether e.g. syncing, probing or building dominates)
+        if (jobs.stream().anyMatch(v -> !v.getSpans().isEmpty())) {
+            log.info("Phases (* = done once per host, shared by its jobs):");
+            final Map<String,Long> totalMillis = new LinkedHashMap<>();
+            final Set<Span> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Job job : jobs) {
+                log.info("#{} {} {}", fixedWidthLeft(job.getId() + "", 3), fixedWidthLeft(job.getTarget().getName(), 30),
+                    renderSpans(job.getSpans()));
+                for (Span span : job.getSpans()) {
+                    if (counted.add(span)) {
+                        totalMillis.merge(span.getName(), span.getMillis(), Long::sum);
+                    }
+                }
+            }
+            log.info("     {} {}", fixedWidthLeft("(total)", 30), totalMillis.entrySet().stream()
+                .map(v -> v.getKey() + "=" + SECS_FMT.format(v.getValue() / 1000d) + "s")
+                .collect(joining(" ")));
+            log.info("");
+        }
+
         for (Job job : jobs) {
-            if (job.getStatus() == JobStatus.FAILED) {
-                log.error("{} as job #{} failed with log @ {}", job.getTarget(), job.getId(), job.getOutput().getFile());
+            if (job.getStatus() == JobStatus.FAILED || job.getStatus() == JobStatus.TIMEOUT) {
+                log.error("{} as job #{} {} with log @ {}", job.getTarget(), job.getId(),
+                    job.getStatus() == JobStatus.TIMEOUT ? "timed out" : "failed", job.getOutput().getFile());
                 log.error("  error => {}", job.getMessage());
                 log.info("");
             }
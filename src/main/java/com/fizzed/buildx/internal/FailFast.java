@@ -0,0 +1,51 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobListener;
+import com.fizzed.buildx.JobStatus;
+import org.slf4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Listens to every job and, as soon as one fails (or times out), cancels all the others (pending jobs never start, while running
+ * jobs are interrupted and have their containers removed).
+ */
+public class FailFast implements JobListener {
+    private final Logger log = Contexts.logger();
+
+    private final List<Job> jobs;
+    private final AtomicBoolean triggered;
+
+    public FailFast(List<Job> jobs) {
+        this.jobs = jobs;
+        this.triggered = new AtomicBoolean(false);
+        for (Job job : jobs) {
+            job.addListener(this);
+        }
+    }
+
+    public boolean isTriggered() {
+        return this.triggered.get();
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status) {
+        if ((status != JobStatus.FAILED && status != JobStatus.TIMEOUT) || !this.triggered.compareAndSet(false, true)) {
+            return;
+        }
+
+        log.warn("Job #{} for {} {}, cancelling all other jobs (fail-fast)", job.getId(), job.getTarget(),
+            status == JobStatus.TIMEOUT ? "timed out" : "failed");
+
+        // runs on the thread of the failed job, which has already completed (so it's fine if removing containers blocks)
+        for (Job other : this.jobs) {
+            if (other != job) {
+                other.cancel("Cancelled since job #" + job.getId() + " for " + job.getTarget() + " failed (fail-fast)");
+            }
+        }
+    }
+
+}
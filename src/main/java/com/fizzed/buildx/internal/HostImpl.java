@@ -127,6 +127,17 @@ public class HostImpl implements Host {
         return remotePath;
     }
 
+    /**
+     * The path of the project on the host, as it would be mounted into a container.
+     */
+    public String containerMountableDir() {
+        if (this.sshSession != null) {
+            return this.remoteDir;
+        } else {
+            return this.absoluteDir.toString();
+        }
+    }
+
     private String sshShellExecScript() {
         if (this.info.getOs() == OperatingSystem.WINDOWS) {
             return this.remoteNativePath(".buildx/host-exec.bat");
@@ -192,20 +203,57 @@ public class HostImpl implements Host {
      */
     @Override
     public Exec exec(String exeOrNameOfExe, Object... arguments) {
+        return this.newExec(null, exeOrNameOfExe, arguments);
+    }
+
+    /**
+     * If the processes an exec runs on this host can be killed from another thread (see killableExec), which is only
+     * needed (and supported) on a remote unix host, since a local process is killed once the thread running it is
+     * interrupted.
+     */
+    public boolean isKillable() {
+        return this.sshSession != null && this.info.getOs() != OperatingSystem.WINDOWS;
+    }
+
+    /**
+     * Executes a command on the host (just like exec), recording the process group it runs in to the pidFile
+     * (relative to the project), so whatever it runs can be killed with kill. Interrupting the thread waiting on an
+     * ssh exec does not necessarily close its channel, whereas killing the processes does.
+     */
+    public Exec killableExec(String pidFile, String exeOrNameOfExe, Object... arguments) {
+        if (!this.isKillable()) {
+            throw new IllegalStateException("Processes on host " + this + " cannot be killed");
+        }
+        return this.newExec(pidFile, exeOrNameOfExe, arguments);
+    }
+
+    /**
+     * Kills the processes of a killableExec that are still running (e.g. once its job is cancelled).
+     */
+    public void kill(String pidFile) {
+        this.newExec(null, "--kill", this.remoteNativePath(pidFile))
+            .exitValuesAny()
+            .run();
+    }
+
+    private Exec newExec(String pidFile, String exeOrNameOfExe, Object... arguments) {
         // is remote?
         Exec exec;
 
         if (this.sshSession != null) {
-            exec = sshExec(this.sshSession, this.sshShellExecScript(), exeOrNameOfExe)
-                .pty(true)          // if the ssh channel closes, this should bubble the SIGHUP signal to the process
-                .args(arguments)
-                ;
+            exec = (pidFile != null
+                    ? sshExec(this.sshSession, this.sshShellExecScript(), "--pid-file", this.remoteNativePath(pidFile), exeOrNameOfExe)
+                    : sshExec(this.sshSession, this.sshShellExecScript(), exeOrNameOfExe))
+                .pty(true);         // if the ssh channel closes, this should bubble the SIGHUP signal to the process
         } else {
             exec = Systems.exec(exeOrNameOfExe)
-                .args(arguments)
                 .workingDir(this.absoluteDir);
         }
 
+        // the command is an event in a flight recording for as long as it runs (once the caller runs it)
+        exec = new JfrExec(exec, JfrEvents.Type.HOST_EXEC, this.toString(), exeOrNameOfExe)
+            .args(arguments);
+
         // do we need to redirect output?
         if (this.output != null) {
             // protect against being closed by Exec
@@ -230,10 +278,11 @@ public class HostImpl implements Host {
             source = localVolume(Paths.get(this.relativePath(sourcePath)));
         }
 
-        return jsync(source, target, JsyncMode.MERGE)
-            .verbose()
-            .progress()
-            .force();
+        return new JfrAction<>(jsync(source, target, JsyncMode.MERGE)
+                .verbose()
+                .progress()
+                .force(),
+            JfrEvents.Type.HOST_RSYNC, this.toString(), sourcePath);
     }
 
 }
@@ -0,0 +1,230 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobListener;
+import com.fizzed.buildx.JobStatus;
+import org.slf4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of equivalent hosts that jobs are dispatched to, whichever member frees up first. Jobs are spread across a
+ * queue per member, and a member that runs out of its own work steals from the back of the longest queue. A member is
+ * only connected, probed and synced the first time it receives work, and a member that cannot be prepared leaves its
+ * queue (and the job it took) to the others. Until it has been prepared, a member may still give back the job it
+ * took, so no other member runs out of work in the meantime.
+ */
+public class HostPool implements JobListener {
+    private final Logger log = Contexts.logger();
+
+    private final String name;
+    private final Map<String,HostPreparer> members;
+    private final Map<String,Deque<Job>> queues;
+    private final AtomicInteger activeWorkers;
+    private final Set<Job> listeningTo;
+    private int nextMember;
+    // jobs taken by members that are not prepared yet (which they give back if they can't be)
+    private int mayBeGivenBack;
+
+    public HostPool(String name, Map<String,HostPreparer> members) {
+        this.name = name;
+        this.members = members;
+        this.queues = new LinkedHashMap<>();
+        for (String member : members.keySet()) {
+            this.queues.put(member, new ArrayDeque<>());
+        }
+        this.activeWorkers = new AtomicInteger(0);
+        this.listeningTo = new HashSet<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Set<String> getMembers() {
+        return this.members.keySet();
+    }
+
+    /**
+     * Adds a job to the queue of the next member (round-robin).
+     */
+    synchronized public void add(Job job) {
+        final List<Deque<Job>> memberQueues = new ArrayList<>(this.queues.values());
+        memberQueues.get(this.nextMember++ % memberQueues.size()).addLast(job);
+        for (Job upstreamJob : job.getUpstreamJobs()) {
+            if (this.listeningTo.add(upstreamJob)) {
+                upstreamJob.addListener(this);
+            }
+        }
+    }
+
+    /**
+     * Takes the next ready job for a member, its own first, otherwise stolen from the back of the longest queue. If
+     * no job is ready yet (e.g. they depend on jobs still running), waits for one to become ready.
+     *
+     * @return the job or null if there is no work left in the pool
+     */
+    public Job next(String member) throws InterruptedException {
+        return this.next(member, false);
+    }
+
+    /**
+     * @param mayGiveBack true if the member isn't prepared yet (so it may give the job back if it can't be)
+     */
+    synchronized private Job next(String member, boolean mayGiveBack) throws InterruptedException {
+        while (true) {
+            Job job = takeFirstReady(this.queues.get(member).iterator());
+
+            if (job == null) {
+                final List<Deque<Job>> longestFirst = new ArrayList<>(this.queues.values());
+                longestFirst.sort(Comparator.comparingInt(q -> -q.size()));
+                for (Deque<Job> queue : longestFirst) {
+                    job = takeFirstReady(queue.descendingIterator());
+                    if (job != null) {
+                        log.debug("Host {} in pool {} stole job #{}", member, this.name, job.getId());
+                        break;
+                    }
+                }
+            }
+
+            if (job != null) {
+                if (mayGiveBack) {
+                    this.mayBeGivenBack++;
+                }
+                return job;
+            }
+
+            // a job another member took may still come back, if that member can't be prepared
+            if (this.mayBeGivenBack == 0 && this.queues.values().stream().allMatch(Deque::isEmpty)) {
+                return null;
+            }
+
+            this.wait();
+        }
+    }
+
+    static private Job takeFirstReady(Iterator<Job> it) {
+        while (it.hasNext()) {
+            final Job job = it.next();
+            if (job.isReady()) {
+                it.remove();
+                return job;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status) {
+        if (status.isCompleted()) {
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+    synchronized private void giveBack(String member, Job job) {
+        this.queues.get(member).addFirst(job);
+        this.mayBeGivenBack--;
+        this.notifyAll();
+    }
+
+    synchronized private void keep() {
+        this.mayBeGivenBack--;
+        this.notifyAll();
+    }
+
+    synchronized private List<Job> drain() {
+        final List<Job> jobs = new ArrayList<>();
+        for (Deque<Job> queue : this.queues.values()) {
+            jobs.addAll(queue);
+            queue.clear();
+        }
+        return jobs;
+    }
+
+    /**
+     * Prepares & runs a job on a specific member.
+     */
+    public void execute(String member, Job job) {
+        this.members.get(member).prepareOrFail(job);
+        job.run();
+    }
+
+    /**
+     * Prepares & runs a job on the first member that can be prepared (e.g. for serial execution).
+     */
+    public void executeOnAny(Job job) {
+        for (Map.Entry<String,HostPreparer> entry : this.members.entrySet()) {
+            try {
+                entry.getValue().prepareHost();
+                this.execute(entry.getKey(), job);
+                return;
+            } catch (Exception e) {
+                log.warn("Host {} in pool {} is unavailable: {}", entry.getKey(), this.name, e.getMessage());
+            }
+        }
+        job.prepareFailed(new IllegalStateException("No host in pool " + this.name + " is available"));
+        job.run();
+    }
+
+    /**
+     * A worker per member, which keeps running jobs on its member until there is no work left in the pool.
+     */
+    public List<Runnable> workers() {
+        final List<Runnable> workers = new ArrayList<>();
+        for (String member : this.members.keySet()) {
+            this.activeWorkers.incrementAndGet();
+            workers.add(() -> {
+                try {
+                    this.work(member);
+                } catch (InterruptedException e) {
+                    log.debug("Interrupted while executing jobs on host {} of pool {}", member, this.name);
+                } finally {
+                    this.workerDone();
+                }
+            });
+        }
+        return workers;
+    }
+
+    private void work(String member) throws InterruptedException {
+        boolean memberPrepared = false;
+        Job job;
+        while ((job = this.next(member, !memberPrepared)) != null) {
+            // the member is prepared (connected, probed, synced) the first time it receives work
+            if (!memberPrepared) {
+                try {
+                    this.members.get(member).prepareHost();
+                    memberPrepared = true;
+                    this.keep();
+                } catch (Throwable t) {
+                    // the job must be given back no matter what, since the other members may be waiting on it
+                    log.warn("Host {} in pool {} is unavailable (its jobs will run on other hosts): {}", member, this.name, t.getMessage());
+                    this.giveBack(member, job);
+                    return;
+                }
+            }
+
+            log.debug("Executing job {} on target {} on host {} of pool {}", job.getId(), job.getTarget(), member, this.name);
+            try {
+                this.execute(member, job);
+            } catch (Throwable t) {
+                log.error("This throwable should have been caught by BuildxJob.run()", t);
+            }
+        }
+    }
+
+    private void workerDone() {
+        // if the last worker is gone, nobody else can run what's left in the pool
+        if (this.activeWorkers.decrementAndGet() == 0) {
+            for (Job job : this.drain()) {
+                job.prepareFailed(new IllegalStateException("No host in pool " + this.name + " is available"));
+                job.run();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,282 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.util.Timer;
+import com.fizzed.buildx.*;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+
+import static com.fizzed.blaze.util.TerminalHelper.fixedWidthCenter;
+
+/**
+ * Prepares jobs for a single host (connect, probe, sync, pull images, containers, etc.). Work that only needs to
+ * happen once per host is remembered, and jobs for a host are prepared one at a time (usually in order by a single
+ * thread, but a host in a pool may also be handed jobs as it frees up), while different hosts can be prepared
+ * concurrently.
+ */
+public class HostPreparer implements Closeable {
+    private final Logger log = Contexts.logger();
+
+    private final String host;
+    private final PrepareContext context;
+    private SshSession sshSession;
+    private HostInfo hostInfo;
+    private String remoteProjectDir;
+    private boolean hostPrepared;
+    private ImagePuller imagePuller;
+    private boolean preparedForContainers;
+    private Exception hostFailure;
+    // phases done once for the host, which every job prepared on it shares
+    private final List<Span> hostSpans;
+
+    public HostPreparer(String host, PrepareContext context) {
+        this.host = host;
+        this.context = context;
+        this.hostSpans = new ArrayList<>();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Connects, probes and syncs the host (only once, a failure is remembered for every later job).
+     */
+    synchronized public void prepareHost() throws Exception {
+        if (this.hostFailure != null) {
+            throw this.hostFailure;
+        }
+        if (this.hostPrepared) {
+            return;
+        }
+
+        try {
+            if (this.host != null) {
+                final Span connectSpan = Span.startShared("connect", this.host);
+                this.sshSession = this.context.getSshSessionPool().acquire(this.host);
+                this.hostSpans.add(connectSpan.end());
+                final Span probeSpan = Span.startShared("probe", this.host);
+                this.hostInfo = HostInfo.probeRemote(this.sshSession, this.context.getHostProbeCache(), this.host);
+                this.hostSpans.add(probeSpan.end());
+                // always relative to home directory of target (which is safest choice when using ssh/sftp, also works on windows)
+                this.remoteProjectDir = "remote-build/" + this.context.getAbsProjectDir().getFileName().toString();
+            } else {
+                final Span probeSpan = Span.startShared("probe", null);
+                this.hostInfo = HostInfo.probeLocal(this.context.getHostProbeCache());
+                this.hostSpans.add(probeSpan.end());
+            }
+
+            final HostImpl host = new HostImpl(this.host, this.hostInfo, this.context.getAbsProjectDir(),
+                this.context.getRelProjectDir(), this.remoteProjectDir, this.sshSession);
+
+            // if the host is remote, we need to rsync the project to the remote host, which needs to happen before any
+            // host.exec() since that relies on the .buildx dir being there
+            if (host.isRemote()) {
+                final Span syncSpan = Span.startShared("sync", this.host);
+                final long syncedBytes = this.sync(host);
+                this.hostSpans.add(syncSpan.end().setBytes(syncedBytes));
+            }
+
+            if (this.hostInfo.resolveContainerExe() != null) {
+                this.imagePuller = new ImagePuller(host, this.context.getPullConcurrency());
+            }
+
+            this.hostPrepared = true;
+        } catch (Exception e) {
+            // no other job on this host will be able to run either
+            this.hostFailure = e;
+            throw e;
+        }
+    }
+
+    /**
+     * Syncs the project to the remote host, while other hosts may be syncing concurrently (up to a limit). Since the
+     * output of concurrent syncs would interleave, jsync is quiet and a single summary line is logged per host.
+     *
+     * @return the size of the files pushed or -1 if it's unknown
+     */
+    private long sync(HostImpl host) throws Exception {
+        final Semaphore syncPermits = this.context.getSyncPermits();
+
+        if (!syncPermits.tryAcquire()) {
+            log.info("Waiting to sync project to {}:{} (other hosts are syncing)", host, this.remoteProjectDir);
+            syncPermits.acquire();
+        }
+
+        // only the sync itself is an event in a flight recording, not the wait for a permit
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.SYNC).host(this.host).detail(this.remoteProjectDir)) {
+            log.info("Syncing project to {}:{}...", host, this.remoteProjectDir);
+
+            final Timer timer = new Timer();
+
+            // what was last pushed to this host is remembered locally, so usually only what changed is pushed
+            final Path manifestFile = this.context.getAbsProjectDir()
+                .resolve(".buildx-cache/sync/" + this.host.replaceAll("[^a-zA-Z0-9._\\-]", "_") + ".properties");
+
+            final ProjectSyncer syncer = new ProjectSyncer(this.sshSession, this.context.getAbsProjectDir(), this.remoteProjectDir,
+                this.context.getIgnorePaths(), manifestFile);
+            final String summary = syncer.sync();
+
+            timer.stop();
+
+            log.info("Synced project to {}:{} ({} in {})", host, this.remoteProjectDir, summary, timer);
+
+            if (syncer.getSyncedBytes() >= 0) {
+                event.bytes(syncer.getSyncedBytes());
+            }
+            event.outcome(summary);
+
+            return syncer.getSyncedBytes();
+        } finally {
+            syncPermits.release();
+        }
+    }
+
+    synchronized public void prepare(Job job) throws Exception {
+        final Target target = job.getTarget();
+        final JobOutput output = job.getOutput();
+
+        // log info about the job to the console
+        log.info(fixedWidthCenter("Preparing Job #" + job.getId(), 100, '='));
+
+        // 1: we need host info & the project synced first (only once per host)
+        this.prepareHost();
+        this.hostSpans.forEach(job::addSpan);
+
+        final HostImpl host = new HostImpl(this.host, this.hostInfo, this.context.getAbsProjectDir(),
+            this.context.getRelProjectDir(), this.remoteProjectDir, this.sshSession);
+
+
+        // 2: if container, wait for its image to be pulled, then probe it (and log it)
+        final ContainerImpl container;
+        if (target.getContainerImage() != null) {
+            // does it even have podman or docker installed?
+            if (this.imagePuller == null) {
+                throw new IllegalStateException("Host " + host.getHost() + " does not have either podman or docker installed");
+            }
+
+            final Span pullSpan = Span.start("pull", this.host);
+            this.imagePuller.await(target.getContainerImage());
+            job.addSpan(pullSpan.end());
+
+            final Span containerProbeSpan = Span.start("container-probe", this.host);
+            ContainerInfo containerInfo = ContainerInfo.probe(host, target.getContainerImage(), this.context.getContainerProbeCache());
+            job.addSpan(containerProbeSpan.end());
+            container = new ContainerImpl(target.getContainerImage(), containerInfo);
+        } else {
+            // no container
+            container = null;
+        }
+
+
+        // 3: log job info to the console & output file
+        log.info("");
+        for (String line : DisplayRenderer.renderJobLines(job.getId(), output.getFile(), host, target)) {
+            log.info(line);
+            IOUtils.write(line + "\n", output.getFileOutput(), StandardCharsets.UTF_8);
+        }
+        for (String line : DisplayRenderer.renderContainerLines(container)) {
+            log.info(line);
+            IOUtils.write(line + "\n", output.getFileOutput(), StandardCharsets.UTF_8);
+        }
+        log.info("");
+        IOUtils.write("\n", output.getFileOutput(), StandardCharsets.UTF_8);
+
+
+        // at this point, we are ready for anything "exec"'ed on the job to be redirected where it should be
+        host.redirectOutput(output);
+
+
+        // 4: prepare the host for containers (but only once per host)
+        if (container != null) {
+            if (!this.preparedForContainers) {
+                log.info("Preparing host {} for containers...", host);
+                final Span prepareSpan = Span.startShared("prepare-host", this.host);
+
+                // make the .buildx-cache dir on the host, that'll be used a the home dir for the container
+                host.mkdir(".buildx-cache")
+                    .run();
+
+                // now delegate the rest to what the user wants
+                if (this.context.getPrepareHostForContainers() != null) {
+                    for (HostExecute prepareHostForContainer : this.context.getPrepareHostForContainers()) {
+                        prepareHostForContainer.execute(host);
+                    }
+                }
+
+                this.hostSpans.add(prepareSpan.end());
+                job.addSpan(prepareSpan);
+                this.preparedForContainers = true;
+            } else {
+                log.info("Skipping prepare of host {} for containers (already done for another target)", host);
+            }
+        }
+
+
+        // we have all the info now we need to build the "local project" we are working with, and the job is ready
+        final String runName = "buildx-" + this.context.getExecuteId() + "-" + job.getId() + "-" + target.getName();
+        final ProjectImpl project = new ProjectImpl(host, container, target, runName, this.context.isContainerSessions());
+
+        job.prepared(host, container, project);
+    }
+
+    /**
+     * Prepares each job in order, handing each one off as soon as it is ready. If something fails that the rest of
+     * the jobs also depend on (e.g. connecting or probing the host), the remaining jobs fail with the same error.
+     * Once the host is ready, the distinct container images of all its jobs start pulling in the background, so
+     * they download concurrently while earlier jobs are still being prepared.
+     */
+    public void prepareAll(List<Job> jobs) {
+        try {
+            this.prepareHost();
+
+            if (this.imagePuller != null) {
+                jobs.stream()
+                    .map(job -> job.getTarget().getContainerImage())
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .forEach(this.imagePuller::pull);
+            }
+        } catch (Throwable t) {
+            // ignored, since preparing each job below will fail with the same error
+        }
+
+        for (Job job : jobs) {
+            this.prepareOrFail(job);
+        }
+    }
+
+    /**
+     * Prepares a job, or marks it as failed if it could not be prepared.
+     */
+    public void prepareOrFail(Job job) {
+        // no point connecting, syncing, etc. for a job that will never run
+        if (job.isCancelled()) {
+            return;
+        }
+        try {
+            this.prepare(job);
+        } catch (Throwable t) {
+            log.error("Unable to prepare job #{} for target {} on host {}: {}", job.getId(), job.getTarget(),
+                this.host != null ? this.host : "<local>", t.getMessage());
+            job.prepareFailed(t);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.imagePuller != null) {
+            this.imagePuller.close();
+        }
+    }
+
+}
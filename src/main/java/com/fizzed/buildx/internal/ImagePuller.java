@@ -0,0 +1,121 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.blaze.util.CaptureOutput;
+import com.fizzed.blaze.util.Streamables;
+import com.fizzed.blaze.util.Timer;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Pulls the container images a host needs concurrently (up to a limit), each image only once, and skipping any
+ * image the host already has.
+ */
+public class ImagePuller implements Closeable {
+    private final Logger log = Contexts.logger();
+
+    private final HostImpl host;
+    private final ExecutorService executor;
+    private final Map<String,CompletableFuture<Void>> pulls;
+
+    public ImagePuller(HostImpl host, int concurrency) {
+        this.host = host;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        this.pulls = new LinkedHashMap<>();
+    }
+
+    /**
+     * Starts pulling the image in the background, unless it's already being pulled.
+     */
+    synchronized public CompletableFuture<Void> pull(String image) {
+        return this.pulls.computeIfAbsent(image, k -> CompletableFuture.runAsync(() -> this.pullIfMissing(image), this.executor));
+    }
+
+    /**
+     * Waits for an image to be pulled (which starts pulling it if it wasn't already).
+     */
+    public void await(String image) throws Exception {
+        try {
+            this.pull(image).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception)e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void pullIfMissing(String image) {
+        final String exe = this.host.getInfo().resolveContainerExe();
+        final Timer timer = new Timer();
+
+        // podman has a cheap "exists" check, docker only has inspect, both exit with zero if the image is present
+        final CaptureOutput existsOutput = Streamables.captureOutput(false);
+        final int existsExitValue;
+        if ("podman".equals(exe)) {
+            existsExitValue = this.host.exec(exe, "image", "exists", image)
+                .pipeOutput(existsOutput)
+                .pipeErrorToOutput()
+                .exitValuesAny()
+                .run();
+        } else {
+            existsExitValue = this.host.exec(exe, "image", "inspect", image)
+                .pipeOutput(existsOutput)
+                .pipeErrorToOutput()
+                .exitValuesAny()
+                .run();
+        }
+
+        if (existsExitValue == 0) {
+            log.info("Image {} already present on host {} (checked in {})", image, this.host, timer);
+            return;
+        }
+
+        log.info("Pulling image {} on host {}...", image, this.host);
+
+        final CaptureOutput pullOutput = Streamables.captureOutput(false);
+        final int pullExitValue = this.host.exec(exe, "pull", image)
+            .pipeOutput(pullOutput)
+            .pipeErrorToOutput()
+            .exitValuesAny()
+            .run();
+
+        if (pullExitValue != 0) {
+            final String output = pullOutput.toString().trim();
+            final String lastLine = output.substring(output.lastIndexOf('\n') + 1).trim();
+            throw new IllegalStateException("Unable to pull image " + image + " on host " + this.host
+                + " (exit value " + pullExitValue + "): " + lastLine);
+        }
+
+        timer.stop();
+
+        log.info("Pulled image {} on host {} ({} in {})", image, this.host, this.imageSize(exe, image), timer);
+    }
+
+    private String imageSize(String exe, String image) {
+        try {
+            final String size = this.host.exec(exe, "image", "inspect", "--format", "{{.Size}}", image)
+                .pipeErrorToOutput()
+                .runCaptureOutput(false)
+                .toString()
+                .trim();
+
+            return String.format("%.1f MB", Long.parseLong(size) / (1024d * 1024d));
+        } catch (Exception e) {
+            return "unknown size";
+        }
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+
+}
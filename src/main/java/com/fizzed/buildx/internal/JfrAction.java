@@ -0,0 +1,37 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.core.Result;
+
+/**
+ * An action (e.g. a jsync) that is a JFR event (see {@link JfrEvents}) for as long as it actually runs. It must be
+ * fully configured before it's wrapped, since the wrapper only runs it.
+ */
+public class JfrAction<R extends Result<?,V,R>,V> extends Action<R,V> {
+
+    private final Action<R,V> action;
+    private final JfrEvents.Type type;
+    private final String host;
+    private final String detail;
+
+    public JfrAction(Action<R,V> action, JfrEvents.Type type, String host, String detail) {
+        super(Contexts.currentContext());
+        this.action = action;
+        this.type = type;
+        this.host = host;
+        this.detail = detail;
+    }
+
+    /**
+     * Every way of running it (run, runResult) ends up here, which runs the wrapped action instead.
+     */
+    @Override
+    protected R doRun() throws BlazeException {
+        try (JfrEvents.Event event = JfrEvents.begin(this.type).host(this.host).detail(this.detail)) {
+            return this.action.runResult();
+        }
+    }
+
+}
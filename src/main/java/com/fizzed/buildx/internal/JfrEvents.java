@@ -0,0 +1,113 @@
+package com.fizzed.buildx.internal;
+
+/**
+ * Custom JFR events (e.g. ssh connects, probes, syncs, container starts), so a flight recording of the JVM running
+ * buildx shows exactly where the time of a run went. The events need jdk.jfr (java 11+), so they are compiled from
+ * src/main/java11 (see the jfr-events profile in the pom) and loaded reflectively. On java 8, or if they weren't
+ * compiled in, every event is a no-op.
+ */
+public class JfrEvents {
+
+    public enum Type {
+        RUN,
+        SSH_CONNECT,
+        HOST_PROBE,
+        CONTAINER_PROBE,
+        CONTAINER_START,
+        SYNC,
+        HOST_EXEC,
+        HOST_RSYNC,
+        EXECUTOR_WAIT
+    }
+
+    /**
+     * An event in progress (from when it began), which is committed to the recording once it's closed.
+     */
+    public interface Event extends AutoCloseable {
+
+        /**
+         * @return true if the event will be recorded (so it's worth building its fields, e.g. a command line)
+         */
+        boolean isEnabled();
+
+        Event host(String host);
+
+        /**
+         * @param detail what the event is about (e.g. the command, container image or execute id)
+         */
+        Event detail(String detail);
+
+        Event bytes(long bytes);
+
+        /**
+         * @param outcome how it went (e.g. cached, failed)
+         */
+        Event outcome(String outcome);
+
+        @Override
+        void close();
+
+    }
+
+    public interface Factory {
+
+        Event begin(Type type);
+
+    }
+
+    static private final Event NOOP = new Event() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public Event host(String host) {
+            return this;
+        }
+
+        @Override
+        public Event detail(String detail) {
+            return this;
+        }
+
+        @Override
+        public Event bytes(long bytes) {
+            return this;
+        }
+
+        @Override
+        public Event outcome(String outcome) {
+            return this;
+        }
+
+        @Override
+        public void close() {
+            // nothing to commit
+        }
+    };
+
+    static private final Factory FACTORY = load();
+
+    static private Factory load() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Factory)Class.forName("com.fizzed.buildx.internal.jfr.JfrEventFactory").getConstructor().newInstance();
+        } catch (Throwable t) {
+            // no jdk.jfr, or the events were not compiled in (or were compiled for a newer java than this one)
+            return null;
+        }
+    }
+
+    static public boolean isAvailable() {
+        return FACTORY != null;
+    }
+
+    /**
+     * Begins an event, e.g. in a try-with-resources so it's committed once what it times is done.
+     */
+    static public Event begin(Type type) {
+        return FACTORY != null ? FACTORY.begin(type) : NOOP;
+    }
+
+}
@@ -0,0 +1,243 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.blaze.core.BlazeException;
+import com.fizzed.blaze.system.Exec;
+import com.fizzed.blaze.util.IntRange;
+import com.fizzed.blaze.util.StreamableInput;
+import com.fizzed.blaze.util.StreamableOutput;
+import com.fizzed.blaze.util.VerboseLogger;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An exec (local or over ssh) that is a JFR event (see {@link JfrEvents}) for as long as it actually runs. Everything
+ * it's configured with is passed on to the exec it wraps (so it overrides every method of Exec that configures it),
+ * and only the arguments are kept (to describe the command).
+ */
+public class JfrExec extends Exec {
+
+    private final Exec exec;
+    private final JfrEvents.Type type;
+    private final String host;
+    private final String exeOrNameOfExe;
+    private final List<Object> arguments;
+
+    public JfrExec(Exec exec, JfrEvents.Type type, String host, String exeOrNameOfExe) {
+        super(Contexts.currentContext());
+        this.exec = exec;
+        this.type = type;
+        this.host = host;
+        this.exeOrNameOfExe = exeOrNameOfExe;
+        this.arguments = new ArrayList<>();
+    }
+
+    /**
+     * Every way of running it (run, runResult, runCaptureOutput) ends up here, which runs the wrapped exec instead.
+     */
+    @Override
+    protected Result doRun() throws BlazeException {
+        final JfrEvents.Event event = JfrEvents.begin(this.type);
+        // the command line is only built if it's going to be recorded
+        if (event.isEnabled()) {
+            final StringBuilder sb = new StringBuilder(this.exeOrNameOfExe);
+            for (Object argument : this.arguments) {
+                sb.append(' ').append(argument);
+            }
+            event.host(this.host).detail(sb.toString());
+        }
+        try {
+            final Result result = this.exec.runResult();
+            event.outcome("exit " + result.get());
+            return result;
+        } catch (RuntimeException e) {
+            event.outcome("failed: " + e.getMessage());
+            throw e;
+        } finally {
+            event.close();
+        }
+    }
+
+    @Override
+    public VerboseLogger getVerboseLogger() {
+        return this.exec.getVerboseLogger();
+    }
+
+    @Override
+    public List<Path> getPaths() {
+        return this.exec.getPaths();
+    }
+
+    @Override
+    public Exec sudo(boolean sudo) {
+        this.exec.sudo(sudo);
+        return this;
+    }
+
+    @Override
+    public Exec shell(boolean shell) {
+        this.exec.shell(shell);
+        return this;
+    }
+
+    @Override
+    public Exec command(Path command) {
+        this.exec.command(command);
+        return this;
+    }
+
+    @Override
+    public Exec command(File command) {
+        this.exec.command(command);
+        return this;
+    }
+
+    @Override
+    public Exec command(String command) {
+        this.exec.command(command);
+        return this;
+    }
+
+    @Override
+    public Exec arg(Object argument) {
+        this.exec.arg(argument);
+        this.arguments.add(argument);
+        return this;
+    }
+
+    @Override
+    public Exec args(Collection<?> arguments) {
+        this.exec.args(arguments);
+        this.arguments.addAll(arguments);
+        return this;
+    }
+
+    @Override
+    public Exec args(Object... arguments) {
+        this.exec.args(arguments);
+        if (arguments != null) {
+            for (Object argument : arguments) {
+                this.arguments.add(argument);
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public Exec env(String name, String value) {
+        this.exec.env(name, value);
+        return this;
+    }
+
+    @Override
+    public Exec env(Map<String,String> environment) {
+        this.exec.env(environment);
+        return this;
+    }
+
+    @Override
+    public Exec workingDir(Path dir) {
+        this.exec.workingDir(dir);
+        return this;
+    }
+
+    @Override
+    public Exec workingDir(File dir) {
+        this.exec.workingDir(dir);
+        return this;
+    }
+
+    @Override
+    public Exec workingDir(String dir) {
+        this.exec.workingDir(dir);
+        return this;
+    }
+
+    @Override
+    public Exec timeout(long timeout, TimeUnit unit) {
+        this.exec.timeout(timeout, unit);
+        return this;
+    }
+
+    @Override
+    public Exec timeout(long timeoutMillis) {
+        this.exec.timeout(timeoutMillis);
+        return this;
+    }
+
+    @Override
+    public Exec exitValue(Integer exitValue) {
+        this.exec.exitValue(exitValue);
+        return this;
+    }
+
+    @Override
+    public Exec exitValuesAny() {
+        this.exec.exitValuesAny();
+        return this;
+    }
+
+    @Override
+    public Exec exitValues(Integer... exitValues) {
+        this.exec.exitValues(exitValues);
+        return this;
+    }
+
+    @Override
+    public Exec exitValues(IntRange... exitValues) {
+        this.exec.exitValues(exitValues);
+        return this;
+    }
+
+    @Override
+    public StreamableInput getPipeInput() {
+        return this.exec.getPipeInput();
+    }
+
+    @Override
+    public Exec pipeInput(StreamableInput pipeInput) {
+        this.exec.pipeInput(pipeInput);
+        return this;
+    }
+
+    @Override
+    public StreamableOutput getPipeOutput() {
+        return this.exec.getPipeOutput();
+    }
+
+    @Override
+    public Exec pipeOutput(StreamableOutput pipeOutput) {
+        this.exec.pipeOutput(pipeOutput);
+        return this;
+    }
+
+    @Override
+    public StreamableOutput getPipeError() {
+        return this.exec.getPipeError();
+    }
+
+    @Override
+    public Exec pipeError(StreamableOutput pipeError) {
+        this.exec.pipeError(pipeError);
+        return this;
+    }
+
+    @Override
+    public Exec pipeErrorToOutput() {
+        this.exec.pipeErrorToOutput();
+        return this;
+    }
+
+    @Override
+    public Exec pipeErrorToOutput(boolean pipeErrorToOutput) {
+        this.exec.pipeErrorToOutput(pipeErrorToOutput);
+        return this;
+    }
+
+}
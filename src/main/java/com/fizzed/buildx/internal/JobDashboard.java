@@ -0,0 +1,258 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.util.Timer;
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobListener;
+import com.fizzed.buildx.JobStatus;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.fizzed.blaze.util.TerminalHelper.*;
+import static java.util.Optional.ofNullable;
+
+/**
+ * Renders the status of jobs executing in parallel to the console (a single, continuously updated line of totals,
+ * a line per running job with the last line of its output and how fast it's producing output, plus a line per failed
+ * job), until all of them have completed. Totals are kept up to date by listening to each job,
+ * so the dashboard re-renders as soon as something changes (and returns as soon as the last job completes), while the
+ * spinner still ticks once a second. Rendering works on a snapshot of the totals, so a slow console never holds up
+ * the jobs reporting their status.
+ */
+public class JobDashboard implements JobListener {
+
+    static private final long SPINNER_TICK_MILLIS = 1000L;
+    static private final int MAX_LAST_LINE_LENGTH = 80;
+
+    private final List<Job> jobs;
+    private final Timer timer;
+    private final AsciiSpinner spinner;
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final List<Job> running;
+    private final List<Job> failed;
+    private final Map<Job,OutputRate> outputRates;
+    private int pendingJobs;
+    private int runningJobs;
+    private int completedJobs;
+    private int successJobs;
+    private int cancelledJobs;
+    private boolean dirty;
+
+    /**
+     * Creates the dashboard, which immediately starts listening to the jobs (so create it before they execute).
+     */
+    public JobDashboard(List<Job> jobs) {
+        this.jobs = jobs;
+        this.timer = new Timer();
+        this.spinner = new AsciiSpinner();
+        this.lock = new ReentrantLock();
+        this.changed = this.lock.newCondition();
+        this.running = new ArrayList<>();
+        this.failed = new ArrayList<>();
+        this.outputRates = new HashMap<>();
+
+        this.lock.lock();
+        try {
+            for (Job job : jobs) {
+                job.addListener(this);
+                this.count(job, job.getStatus(), 1);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void count(Job job, JobStatus status, int delta) {
+        switch (status) {
+            case PENDING:
+                this.pendingJobs += delta;
+                break;
+            case RUNNING:
+                this.runningJobs += delta;
+                if (delta > 0) {
+                    this.running.add(job);
+                } else {
+                    this.running.remove(job);
+                }
+                break;
+            default:
+                this.completedJobs += delta;
+                if (status.isSuccess()) {
+                    this.successJobs += delta;
+                } else if (status == JobStatus.CANCELLED) {
+                    this.cancelledJobs += delta;
+                } else if (status == JobStatus.FAILED || status == JobStatus.TIMEOUT) {
+                    if (delta > 0) {
+                        this.failed.add(job);
+                    } else {
+                        this.failed.remove(job);
+                    }
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status) {
+        this.lock.lock();
+        try {
+            this.count(job, previousStatus, -1);
+            this.count(job, status, 1);
+            this.dirty = true;
+            this.changed.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void waitForCompletion() throws InterruptedException {
+        final int totalJobs = this.jobs.size();
+        int lastMessageLines = 0;
+        long nextTickAt = System.currentTimeMillis() + SPINNER_TICK_MILLIS;
+        String spinnerFrame = this.spinner.next();
+
+        try {
+            while (true) {
+                final Snapshot snapshot;
+                this.lock.lock();
+                try {
+                    if (this.completedJobs >= totalJobs) {
+                        break;
+                    }
+
+                    // wait for a change or the next spinner tick (whichever is first)
+                    final long waitMillis = nextTickAt - System.currentTimeMillis();
+                    if (!this.dirty && waitMillis > 0) {
+                        this.changed.await(waitMillis, TimeUnit.MILLISECONDS);
+                    }
+
+                    if (System.currentTimeMillis() >= nextTickAt) {
+                        spinnerFrame = this.spinner.next();      // predictable is better for spinner rendering
+                        nextTickAt += SPINNER_TICK_MILLIS;
+                    }
+                    this.dirty = false;
+
+                    snapshot = new Snapshot(this);
+                } finally {
+                    this.lock.unlock();
+                }
+
+                // the console may be slow, so listeners (i.e. the jobs) never wait on it
+                lastMessageLines = this.render(spinnerFrame, totalJobs, snapshot, lastMessageLines);
+            }
+        } finally {
+            for (Job job : this.jobs) {
+                job.removeListener(this);
+            }
+        }
+    }
+
+    private int render(String spinnerFrame, int totalJobs, Snapshot snapshot, int lastMessageLines) {
+        System.out.println(
+            cursorUpCode(1 + lastMessageLines) + clearLineCode() +
+            "  [" + spinnerFrame + "] completed " + snapshot.completedJobs + " / " + totalJobs + " jobs " +
+            "[" + (snapshot.runningJobs > 0 ? cyanCode() : "") + "running: " + snapshot.runningJobs + resetCode() + ", " +
+            (snapshot.pendingJobs > 0 ? magentaCode() : "") + "pending: " + snapshot.pendingJobs + resetCode() + ", "
+            + (snapshot.successJobs > 0 ? greenCode() : "") + "success: " + snapshot.successJobs + resetCode()
+            + ", " + (!snapshot.failed.isEmpty() ? redCode() : "") + "failed: " + snapshot.failed.size() + resetCode()
+            + (snapshot.cancelledJobs > 0 ? ", " + magentaCode() + "cancelled: " + snapshot.cancelledJobs + resetCode() : "") + "] elapsed " + timer);
+
+        int messageLines = 0;
+
+        // only the rendering thread uses the output rates, so forget those of jobs no longer running here
+        this.outputRates.keySet().retainAll(snapshot.running);
+
+        final long now = System.currentTimeMillis();
+        for (Job job : snapshot.running) {
+            final OutputMeter meter = job.getOutput() != null ? job.getOutput().getMeter() : null;
+            if (meter == null) {
+                continue;
+            }
+            final OutputRate rate = this.outputRates.computeIfAbsent(job, k -> new OutputRate(now, meter.getBytes()));
+            rate.sample(now, meter.getBytes());
+            final String lastLine = ofNullable(meter.getLastLine()).orElse("");
+            System.out.println(clearLineCode() + "  > job #" + job.getId() + " on " + job.getTarget()
+                + " [" + rate + "] " + (lastLine.length() > MAX_LAST_LINE_LENGTH ? lastLine.substring(0, MAX_LAST_LINE_LENGTH) + "..." : lastLine));
+            messageLines++;
+        }
+
+        for (Job job : snapshot.failed) {
+            // we need to clear the line since it may change
+            System.out.println(clearLineCode() + "  => job #" + job.getId() + " on " + job.getTarget() + " "
+                + (job.getStatus() == JobStatus.TIMEOUT ? "timed out" : "failed") + " with log @ " + job.getOutput().getFile());
+            messageLines++;
+        }
+
+        // clear whatever is left of the last render (e.g. a job that is no longer running), then go back up
+        if (messageLines < lastMessageLines) {
+            for (int i = messageLines; i < lastMessageLines; i++) {
+                System.out.println(clearLineCode());
+            }
+            System.out.print(cursorUpCode(lastMessageLines - messageLines));
+        }
+
+        return messageLines;
+    }
+
+    /**
+     * The totals at one point in time (taken while holding the lock, so they're consistent with each other).
+     */
+    static private class Snapshot {
+        private final List<Job> running;
+        private final List<Job> failed;
+        private final int pendingJobs;
+        private final int runningJobs;
+        private final int completedJobs;
+        private final int successJobs;
+        private final int cancelledJobs;
+
+        Snapshot(JobDashboard dashboard) {
+            this.running = new ArrayList<>(dashboard.running);
+            this.failed = new ArrayList<>(dashboard.failed);
+            this.pendingJobs = dashboard.pendingJobs;
+            this.runningJobs = dashboard.runningJobs;
+            this.completedJobs = dashboard.completedJobs;
+            this.successJobs = dashboard.successJobs;
+            this.cancelledJobs = dashboard.cancelledJobs;
+        }
+    }
+
+    /**
+     * How fast a job is producing output (sampled at most once a second).
+     */
+    static private class OutputRate {
+        private long sampledAt;
+        private long sampledBytes;
+        private long bytesPerSec;
+
+        OutputRate(long sampledAt, long sampledBytes) {
+            this.sampledAt = sampledAt;
+            this.sampledBytes = sampledBytes;
+        }
+
+        void sample(long now, long bytes) {
+            if (now - this.sampledAt >= 1000L) {
+                this.bytesPerSec = (bytes - this.sampledBytes) * 1000L / (now - this.sampledAt);
+                this.sampledAt = now;
+                this.sampledBytes = bytes;
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (this.bytesPerSec >= 1024L * 1024L) {
+                return String.format("%.1f MB/s", this.bytesPerSec / (1024d * 1024d));
+            } else if (this.bytesPerSec >= 1024L) {
+                return String.format("%.1f KB/s", this.bytesPerSec / 1024d);
+            }
+            return this.bytesPerSec + " B/s";
+        }
+    }
+
+}
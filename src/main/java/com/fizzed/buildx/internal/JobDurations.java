@@ -0,0 +1,143 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static com.fizzed.buildx.internal.Utils.targetKey;
+
+/**
+ * How long each target took the last time it succeeded (e.g. in .buildx-cache/durations.properties), so jobs can be
+ * scheduled longest-first. Running the longest jobs first (the LPT heuristic) keeps a slow target, like an emulated
+ * architecture, from starting last and holding up the whole run.
+ */
+public class JobDurations {
+    static private final Logger log = LoggerFactory.getLogger(JobDurations.class);
+
+    private final Path file;
+    private final Map<String,Long> durations;
+
+    public JobDurations(Path file) {
+        this.file = file;
+        this.durations = new TreeMap<>();
+    }
+
+    /**
+     * Loads the stored durations, or none if they do not exist (or cannot be read).
+     */
+    static public JobDurations load(Path file) {
+        final JobDurations jobDurations = new JobDurations(file);
+        if (Files.exists(file)) {
+            final Properties properties = new Properties();
+            try (InputStream input = Files.newInputStream(file)) {
+                properties.load(input);
+                for (String key : properties.stringPropertyNames()) {
+                    jobDurations.durations.put(key, Long.parseLong(properties.getProperty(key)));
+                }
+            } catch (IOException | NumberFormatException e) {
+                log.warn("Unable to read job durations {} (jobs will run in declared order): {}", file, e.getMessage());
+                jobDurations.durations.clear();
+            }
+        }
+        return jobDurations;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return the expected duration of the target or null if it has never succeeded
+     */
+    public Long getExpectedMillis(Target target) {
+        return this.durations.get(targetKey(target));
+    }
+
+    public JobDurations setExpectedMillis(Target target, long millis) {
+        this.durations.put(targetKey(target), millis);
+        return this;
+    }
+
+    /**
+     * Orders jobs longest-first. A job's length includes the longest chain of jobs that depend on it, so a short job
+     * that a long one is waiting on still goes early. Jobs that have never succeeded go first (they could be long,
+     * and it's the only way to learn how long they take), and ties keep the declared order.
+     */
+    public List<Job> order(List<Job> jobs) {
+        final Map<Job,List<Job>> downstreamJobs = new HashMap<>();
+        for (Job job : jobs) {
+            for (Job upstreamJob : job.getUpstreamJobs()) {
+                downstreamJobs.computeIfAbsent(upstreamJob, k -> new ArrayList<>()).add(job);
+            }
+        }
+
+        final Map<Job,Long> ranks = new HashMap<>();
+        for (Job job : jobs) {
+            this.rank(job, downstreamJobs, ranks);
+        }
+
+        final List<Job> ordered = new ArrayList<>(jobs);
+        // a stable sort, so ties (and all jobs if there is no history) keep the declared order
+        ordered.sort(Comparator.comparingLong((Job job) -> {
+            final Long rank = ranks.get(job);
+            return rank != null ? rank : Long.MAX_VALUE;
+        }).reversed());
+        return ordered;
+    }
+
+    private Long rank(Job job, Map<Job,List<Job>> downstreamJobs, Map<Job,Long> ranks) {
+        if (ranks.containsKey(job)) {
+            return ranks.get(job);
+        }
+        final Long expectedMillis = this.getExpectedMillis(job.getTarget());
+        Long rank = null;
+        if (expectedMillis != null) {
+            long longestDownstream = 0L;
+            for (Job downstreamJob : downstreamJobs.getOrDefault(job, Collections.emptyList())) {
+                final Long downstreamRank = this.rank(downstreamJob, downstreamJobs, ranks);
+                if (downstreamRank != null) {
+                    longestDownstream = Math.max(longestDownstream, downstreamRank);
+                }
+            }
+            rank = expectedMillis + longestDownstream;
+        }
+        ranks.put(job, rank);
+        return rank;
+    }
+
+    /**
+     * Records how long each successful job took (a failed, skipped or cancelled job usually stopped early, so its
+     * duration says little about how long the target takes).
+     */
+    public void record(List<Job> jobs) {
+        for (Job job : jobs) {
+            if (job.getStatus() == JobStatus.SUCCESS && job.getTimer() != null) {
+                this.setExpectedMillis(job.getTarget(), job.getTimer().elapsed());
+            }
+        }
+    }
+
+    public void store() throws IOException {
+        final Properties properties = new Properties();
+        this.durations.forEach((key, millis) -> properties.setProperty(key, Long.toString(millis)));
+
+        Files.createDirectories(this.file.getParent());
+        // write to a temp file and then move it in place, so a concurrent or killed run never sees half a file
+        final Path tempFile = Files.createTempFile(this.file.getParent(), this.file.getFileName().toString(), ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempFile)) {
+            properties.store(output, "buildx job durations (millis)");
+        }
+        Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
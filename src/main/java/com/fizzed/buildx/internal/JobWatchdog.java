@@ -0,0 +1,95 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.util.Timer;
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an eye on running jobs and times out any that run longer than their timeout (the target's, otherwise the
+ * default), or that have not produced any output for too long (e.g. a deadlocked test). A timed out job is stopped the
+ * same way as a cancelled one, so the rest of the jobs on its host can proceed.
+ */
+public class JobWatchdog implements Closeable {
+    static private final Logger log = LoggerFactory.getLogger(JobWatchdog.class);
+
+    private final List<Job> jobs;
+    private final Duration timeout;
+    private final Duration stallTimeout;
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param timeout the timeout of a job whose target has none, or null for no timeout
+     * @param stallTimeout how long a job may go without any output, or null to never consider it stalled
+     */
+    public JobWatchdog(List<Job> jobs, Duration timeout, Duration stallTimeout) {
+        this.jobs = jobs;
+        this.timeout = timeout;
+        this.stallTimeout = stallTimeout;
+    }
+
+    public JobWatchdog start() {
+        final boolean anyTimeouts = this.timeout != null || this.stallTimeout != null
+            || this.jobs.stream().anyMatch(v -> v.getTarget().getTimeout() != null);
+        if (anyTimeouts) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "buildx-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleWithFixedDelay(this::check, 1L, 1L, TimeUnit.SECONDS);
+        }
+        return this;
+    }
+
+    public void check() {
+        this.check(System.currentTimeMillis());
+    }
+
+    /**
+     * Checks the jobs as if it were a given time (e.g. to check what happens later on, without waiting for it).
+     */
+    void check(long now) {
+        for (Job job : this.jobs) {
+            final Timer timer = job.getTimer();
+            if (job.getStatus() != JobStatus.RUNNING || timer == null) {
+                continue;
+            }
+
+            final long startedAt = System.currentTimeMillis() - timer.elapsed();
+            final long runningMillis = now - startedAt;
+            final Duration jobTimeout = job.getTarget().getTimeout() != null ? job.getTarget().getTimeout() : this.timeout;
+            if (jobTimeout != null && runningMillis > jobTimeout.toMillis()) {
+                log.warn("Job #{} for {} timed out after {}s", job.getId(), job.getTarget(), jobTimeout.getSeconds());
+                job.timeOut("Timed out after " + jobTimeout.getSeconds() + "s");
+                continue;
+            }
+
+            final OutputMeter meter = job.getOutput() != null ? job.getOutput().getMeter() : null;
+            if (this.stallTimeout != null && meter != null) {
+                // output written before the job started running (e.g. while preparing) doesn't count
+                final long lastActivityAt = Math.max(meter.getLastWriteAt(), startedAt);
+                if (now - lastActivityAt > this.stallTimeout.toMillis()) {
+                    log.warn("Job #{} for {} stalled (no output for {}s)", job.getId(), job.getTarget(), this.stallTimeout.getSeconds());
+                    job.timeOut("Stalled with no output for " + this.stallTimeout.getSeconds() + "s");
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobListener;
+import com.fizzed.buildx.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips the log of each job (job-N-target.log to job-N-target.log.gz) on a background thread as soon as the job
+ * completes, while the other jobs keep running.
+ */
+public class LogCompressor implements JobListener, Closeable {
+    static private final Logger log = LoggerFactory.getLogger(LogCompressor.class);
+
+    private final List<Job> jobs;
+    private final ExecutorService executor;
+
+    public LogCompressor(List<Job> jobs) {
+        this.jobs = jobs;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "buildx-log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Job job : jobs) {
+            job.addListener(this);
+        }
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status) {
+        if (status.isCompleted()) {
+            this.executor.submit(() -> this.compress(job));
+        }
+    }
+
+    private void compress(Job job) {
+        // nothing else is written to the log once the job completes
+        job.getOutput().close();
+
+        final Path file = job.getOutput().getFile();
+        final Path compressedFile = file.resolveSibling(file.getFileName() + ".gz");
+        try {
+            compress(file, compressedFile);
+            job.getOutput().setFile(compressedFile);
+        } catch (IOException e) {
+            log.warn("Unable to compress log {} (will leave it as is): {}", file, e.getMessage());
+        }
+    }
+
+    static public void compress(Path file, Path compressedFile) throws IOException {
+        final Path tempFile = compressedFile.resolveSibling(compressedFile.getFileName() + ".tmp");
+        try (OutputStream output = new GZIPOutputStream(Files.newOutputStream(tempFile), 65536)) {
+            Files.copy(file, output);
+        }
+        Files.move(tempFile, compressedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.delete(file);
+    }
+
+    /**
+     * Waits for every log queued so far to be compressed.
+     */
+    @Override
+    public void close() {
+        for (Job job : this.jobs) {
+            job.removeListener(this);
+        }
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.MINUTES)) {
+                log.warn("Timed out waiting for job logs to be compressed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
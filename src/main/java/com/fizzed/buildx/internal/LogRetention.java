@@ -0,0 +1,86 @@
+package com.fizzed.buildx.internal;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prunes the logs of old runs (the .buildx-logs/[executeId] dirs, where the execute ids are timestamps), keeping at
+ * most a number of runs, runs no older than an age, and runs no bigger than a total size (whichever are set). The
+ * newest runs are always the ones kept, and the most recent run is never pruned.
+ */
+public class LogRetention {
+    static private final Logger log = LoggerFactory.getLogger(LogRetention.class);
+
+    private final int maxRuns;
+    private final Duration maxAge;
+    private final long maxBytes;
+
+    /**
+     * @param maxRuns the max number of runs to keep, or zero for no limit
+     * @param maxAge the max age of a run to keep, or null for no limit
+     * @param maxBytes the max total size of the runs to keep, or zero for no limit
+     */
+    public LogRetention(int maxRuns, Duration maxAge, long maxBytes) {
+        this.maxRuns = maxRuns;
+        this.maxAge = maxAge;
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean isEnabled() {
+        return this.maxRuns > 0 || this.maxAge != null || this.maxBytes > 0;
+    }
+
+    /**
+     * @return the dirs of the runs that were pruned
+     */
+    public List<Path> prune(Path logsDir, long now) throws IOException {
+        final List<Path> pruned = new ArrayList<>();
+        if (!this.isEnabled() || !Files.isDirectory(logsDir)) {
+            return pruned;
+        }
+
+        final List<Path> runDirs;
+        try (Stream<Path> dirs = Files.list(logsDir)) {
+            runDirs = dirs
+                .filter(v -> Files.isDirectory(v) && v.getFileName().toString().matches("\\d+"))
+                .sorted(Comparator.comparingLong((Path v) -> executedAt(v)).reversed())
+                .collect(Collectors.toList());
+        }
+
+        long keptBytes = 0L;
+        for (int i = 0; i < runDirs.size(); i++) {
+            final Path runDir = runDirs.get(i);
+            // the most recent run is kept regardless of any limit (e.g. for --rerun-failed)
+            final boolean prunable = i > 0;
+            boolean prune = prunable && this.maxRuns > 0 && i >= this.maxRuns;
+            prune = prune || (prunable && this.maxAge != null && now - executedAt(runDir) > this.maxAge.toMillis());
+            if (!prune && this.maxBytes > 0) {
+                keptBytes += FileUtils.sizeOfDirectory(runDir.toFile());
+                prune = prunable && keptBytes > this.maxBytes;
+            }
+            if (prune) {
+                log.debug("Pruning logs {}", runDir);
+                FileUtils.deleteDirectory(runDir.toFile());
+                pruned.add(runDir);
+            }
+        }
+
+        return pruned;
+    }
+
+    static private long executedAt(Path runDir) {
+        return Long.parseLong(runDir.getFileName().toString());
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes metrics of a run as OpenMetrics text (e.g. for the textfile collector of node_exporter): job durations by
+ * target, host & status, phase durations, bytes synced per host, probe latencies and how long jobs waited in their
+ * queue. Samples are only labelled by what stays the same between runs (e.g. target, host, image), so every run
+ * updates the same series, while the id of the run is exposed once (by buildx_run_info). The file is always replaced
+ * atomically, so a scrape never sees half of it, and can optionally be updated while the run is still going.
+ */
+public class MetricsWriter implements Closeable {
+    static private final Logger log = LoggerFactory.getLogger(MetricsWriter.class);
+
+    private final Path file;
+    private final String executeId;
+    private final List<Job> jobs;
+    private ScheduledExecutorService executor;
+
+    public MetricsWriter(Path file, String executeId, List<Job> jobs) {
+        this.file = file;
+        this.executeId = executeId;
+        this.jobs = jobs;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the metrics every interval (until closed).
+     *
+     * @param interval how often, or null to only write them at the end of the run
+     */
+    public MetricsWriter start(Duration interval) {
+        if (interval != null && !interval.isZero()) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "buildx-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.executor.scheduleWithFixedDelay(() -> {
+                try {
+                    this.write();
+                } catch (Exception e) {
+                    log.warn("Unable to write metrics {}: {}", this.file, e.getMessage());
+                }
+            }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+        return this;
+    }
+
+    synchronized public void write() throws IOException {
+        final String text = this.render();
+        Files.createDirectories(this.file.toAbsolutePath().getParent());
+        final Path tempFile = Files.createTempFile(this.file.toAbsolutePath().getParent(), this.file.getFileName().toString(), ".tmp");
+        Files.write(tempFile, text.getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String render() {
+        final StringBuilder sb = new StringBuilder();
+
+        family(sb, "buildx_run", "info", null, "The run the metrics are of.");
+        sample(sb, "buildx_run_info", labels("execute_id", this.executeId), 1);
+
+        // totals by status (every status is present, so a series doesn't come & go between updates)
+        final Map<JobStatus,Integer> statuses = new EnumMap<>(JobStatus.class);
+        for (JobStatus status : JobStatus.values()) {
+            statuses.put(status, 0);
+        }
+        this.jobs.forEach(v -> statuses.merge(v.getStatus(), 1, Integer::sum));
+
+        family(sb, "buildx_jobs", "gauge", null, "Jobs of the run by status.");
+        statuses.forEach((status, count) -> sample(sb, "buildx_jobs", labels("status", status.name().toLowerCase()), count));
+
+        family(sb, "buildx_job_duration_seconds", "gauge", "seconds", "How long each job ran for.");
+        for (Job job : this.jobs) {
+            if (job.getTimer() != null) {
+                sample(sb, "buildx_job_duration_seconds", this.jobLabels(job, "status", job.getStatus().name().toLowerCase()),
+                    job.getTimer().elapsed() / 1000d);
+            }
+        }
+
+        family(sb, "buildx_phase_duration_seconds", "gauge", "seconds", "How long each phase of each job took (shared phases are done once per host).");
+        for (Job job : this.jobs) {
+            for (Span span : job.getSpans()) {
+                sample(sb, "buildx_phase_duration_seconds", this.jobLabels(job, "phase", span.getName(),
+                    "shared", Boolean.toString(span.isShared())), span.getMillis() / 1000d);
+            }
+        }
+
+        family(sb, "buildx_queue_wait_seconds", "gauge", "seconds", "How long each job waited for its turn to run.");
+        for (Job job : this.jobs) {
+            for (Span span : job.getSpans()) {
+                if (span.getName().equals("queue")) {
+                    sample(sb, "buildx_queue_wait_seconds", this.jobLabels(job), span.getMillis() / 1000d);
+                }
+            }
+        }
+
+        // phases shared by the jobs of a host are only counted once
+        final Set<Span> hostSpans = Collections.newSetFromMap(new IdentityHashMap<>());
+        this.jobs.forEach(v -> hostSpans.addAll(v.getSpans()));
+
+        family(sb, "buildx_sync_bytes", "gauge", "bytes", "Size of the files pushed to each host by a delta sync (absent after a full sync, whose size is unknown).");
+        for (Span span : hostSpans) {
+            if (span.getName().equals("sync") && span.getBytes() >= 0) {
+                sample(sb, "buildx_sync_bytes", labels("host", span.getHost()), span.getBytes());
+            }
+        }
+
+        family(sb, "buildx_probe_duration_seconds", "gauge", "seconds", "How long probing each host (or container on it) took.");
+        for (Span span : hostSpans) {
+            if (span.getName().equals("probe")) {
+                sample(sb, "buildx_probe_duration_seconds", labels("host", span.getHost(), "kind", "host"), span.getMillis() / 1000d);
+            }
+        }
+        for (Job job : this.jobs) {
+            for (Span span : job.getSpans()) {
+                if (span.getName().equals("container-probe")) {
+                    sample(sb, "buildx_probe_duration_seconds", this.jobLabels(job, "kind", "container"), span.getMillis() / 1000d);
+                }
+            }
+        }
+
+        sb.append("# EOF\n");
+        return sb.toString();
+    }
+
+    private String jobLabels(Job job, String... extraLabels) {
+        // the host a job in a pool ran on is only known once it's dispatched
+        String host = job.getHost() != null ? job.getHost().getHost() : job.getTarget().getHost();
+        if (host == null) {
+            host = job.getTarget().getHostPool() != null ? "pool:" + job.getTarget().getHostPool() : "<local>";
+        }
+        final List<String> labels = new ArrayList<>(Arrays.asList("target", job.getTarget().getName(), "host", host));
+        if (job.getTarget().getContainerImage() != null) {
+            labels.add("image");
+            labels.add(job.getTarget().getContainerImage());
+        }
+        labels.addAll(Arrays.asList(extraLabels));
+        return labels(labels.toArray(new String[0]));
+    }
+
+    static private void family(StringBuilder sb, String name, String type, String unit, String help) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            sb.append("# UNIT ").append(name).append(' ').append(unit).append('\n');
+        }
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    static private void sample(StringBuilder sb, String name, String labels, Number value) {
+        sb.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    static private String labels(String... namesAndValues) {
+        final StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(namesAndValues[i]).append("=\"").append(escape(namesAndValues[i + 1])).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    static private String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public void close() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.fizzed.buildx.internal;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Counts the bytes (and lines) written through it and remembers when the last write happened, so a job that has
+ * stopped producing output (e.g. a deadlocked test) can be detected. The last few lines are also kept in memory (in a
+ * ring buffer), so what a job is doing can be shown without re-reading its log.
+ */
+public class OutputMeter extends FilterOutputStream {
+
+    static public final int DEFAULT_TAIL_LINES = 10;
+    static private final int MAX_LINE_BYTES = 1024;
+    static private final Pattern ANSI_ESCAPE = Pattern.compile("\u001B\\[[0-9;?]*[ -/]*[@-~]");
+
+    private final int tailLines;
+    private final Deque<String> tail;
+    private final byte[] line;
+    private int lineLength;
+    private long bytes;
+    private long lines;
+    private volatile long lastWriteAt;
+
+    public OutputMeter(OutputStream out) {
+        this(out, DEFAULT_TAIL_LINES);
+    }
+
+    public OutputMeter(OutputStream out, int tailLines) {
+        super(out);
+        this.tailLines = tailLines;
+        this.tail = new ArrayDeque<>(tailLines);
+        this.line = new byte[MAX_LINE_BYTES];
+        this.lastWriteAt = System.currentTimeMillis();
+    }
+
+    synchronized public long getBytes() {
+        return bytes;
+    }
+
+    synchronized public long getLines() {
+        return lines;
+    }
+
+    public long getLastWriteAt() {
+        return lastWriteAt;
+    }
+
+    /**
+     * @return the last few lines (oldest first), stripped of any terminal escapes
+     */
+    synchronized public List<String> getLastLines() {
+        return new ArrayList<>(this.tail);
+    }
+
+    /**
+     * @return the last line (or null if there isn't one yet), stripped of any terminal escapes
+     */
+    synchronized public String getLastLine() {
+        return this.tail.peekLast();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        this.write(new byte[] { (byte)b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // the default of FilterOutputStream writes a byte at a time
+        this.out.write(b, off, len);
+        this.written(b, off, len);
+    }
+
+    synchronized private void written(byte[] b, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            final byte c = b[i];
+            if (c == '\n') {
+                this.lines++;
+                this.endLine();
+            } else if (c == '\r') {
+                // progress bars redraw the line, which is as good as a new one
+                this.endLine();
+            } else if (this.lineLength < this.line.length) {
+                this.line[this.lineLength++] = c;
+            }
+        }
+        this.bytes += len;
+        this.lastWriteAt = System.currentTimeMillis();
+    }
+
+    private void endLine() {
+        if (this.lineLength > 0 && this.tailLines > 0) {
+            final String text = new String(this.line, 0, this.lineLength, StandardCharsets.UTF_8);
+            final String stripped = ANSI_ESCAPE.matcher(text).replaceAll("").replaceAll("\\p{Cntrl}", "").trim();
+            if (!stripped.isEmpty()) {
+                if (this.tail.size() == this.tailLines) {
+                    this.tail.removeFirst();
+                }
+                this.tail.addLast(stripped);
+            }
+        }
+        this.lineLength = 0;
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.HostExecute;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Everything shared by the preparation of all hosts during a single run.
+ */
+public class PrepareContext {
+
+    private final String executeId;
+    private final Path absProjectDir;
+    private final Path relProjectDir;
+    private final List<String> ignorePaths;
+    private final SshSessionPool sshSessionPool;
+    private List<HostExecute> prepareHostForContainers;
+    private ProbeCache hostProbeCache;
+    private ProbeCache containerProbeCache;
+    private boolean containerSessions;
+    private int pullConcurrency;
+    private Semaphore syncPermits;
+
+    public PrepareContext(String executeId, Path absProjectDir, Path relProjectDir, List<String> ignorePaths, SshSessionPool sshSessionPool) {
+        this.executeId = executeId;
+        this.absProjectDir = absProjectDir;
+        this.relProjectDir = relProjectDir;
+        this.ignorePaths = ignorePaths;
+        this.sshSessionPool = sshSessionPool;
+        this.pullConcurrency = 1;
+        this.syncPermits = new Semaphore(1);
+    }
+
+    public String getExecuteId() {
+        return executeId;
+    }
+
+    public Path getAbsProjectDir() {
+        return absProjectDir;
+    }
+
+    public Path getRelProjectDir() {
+        return relProjectDir;
+    }
+
+    public List<String> getIgnorePaths() {
+        return ignorePaths;
+    }
+
+    public SshSessionPool getSshSessionPool() {
+        return sshSessionPool;
+    }
+
+    public List<HostExecute> getPrepareHostForContainers() {
+        return prepareHostForContainers;
+    }
+
+    public PrepareContext setPrepareHostForContainers(List<HostExecute> prepareHostForContainers) {
+        this.prepareHostForContainers = prepareHostForContainers;
+        return this;
+    }
+
+    public ProbeCache getHostProbeCache() {
+        return hostProbeCache;
+    }
+
+    public PrepareContext setHostProbeCache(ProbeCache hostProbeCache) {
+        this.hostProbeCache = hostProbeCache;
+        return this;
+    }
+
+    public ProbeCache getContainerProbeCache() {
+        return containerProbeCache;
+    }
+
+    public PrepareContext setContainerProbeCache(ProbeCache containerProbeCache) {
+        this.containerProbeCache = containerProbeCache;
+        return this;
+    }
+
+    public boolean isContainerSessions() {
+        return containerSessions;
+    }
+
+    public PrepareContext setContainerSessions(boolean containerSessions) {
+        this.containerSessions = containerSessions;
+        return this;
+    }
+
+    public int getPullConcurrency() {
+        return pullConcurrency;
+    }
+
+    public PrepareContext setPullConcurrency(int pullConcurrency) {
+        this.pullConcurrency = pullConcurrency;
+        return this;
+    }
+
+    /**
+     * Limits how many hosts are synced at once, a permit must be acquired for each sync.
+     */
+    public Semaphore getSyncPermits() {
+        return syncPermits;
+    }
+
+    public PrepareContext setSyncParallelism(int syncParallelism) {
+        this.syncPermits = new Semaphore(Math.max(1, syncParallelism), true);
+        return this;
+    }
+
+}
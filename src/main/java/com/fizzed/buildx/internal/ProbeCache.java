@@ -0,0 +1,179 @@
+package com.fizzed.buildx.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent on-disk cache of probe results (e.g. under .buildx-cache/probes), one properties file per key. An entry
+ * is only valid if it is younger than the ttl and its fingerprint (something cheap to re-check, such as the uname
+ * of a host) still matches. Entries loaded or stored are also kept in memory for the rest of the run.
+ */
+public class ProbeCache {
+    static private final Logger log = LoggerFactory.getLogger(ProbeCache.class);
+
+    private final Path dir;
+    private final long ttlMillis;
+    private final boolean reprobe;
+    private final Map<String,Entry> memory;
+
+    public ProbeCache(Path dir, long ttlMillis, boolean reprobe) {
+        this.dir = dir;
+        this.ttlMillis = ttlMillis;
+        this.reprobe = reprobe;
+        this.memory = new ConcurrentHashMap<>();
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public boolean isReprobe() {
+        return reprobe;
+    }
+
+    static public class Entry {
+        private final String fingerprint;
+        private final long probedAt;
+        private final Map<String,String> facts;
+        private final Map<String,String> outputs;
+
+        public Entry(String fingerprint, long probedAt, Map<String,String> facts, Map<String,String> outputs) {
+            this.fingerprint = fingerprint;
+            this.probedAt = probedAt;
+            this.facts = facts;
+            this.outputs = outputs;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getProbedAt() {
+            return probedAt;
+        }
+
+        public Map<String,String> getFacts() {
+            return facts;
+        }
+
+        public String getFact(String name) {
+            return facts.get(name);
+        }
+
+        /**
+         * The outputs of a RecordingSystemExecutor, so platform detection can be replayed.
+         */
+        public Map<String,String> getOutputs() {
+            return outputs;
+        }
+    }
+
+    private Path file(String key) {
+        // keys are things like user@host:port, so sanitize them into a safe file name
+        return this.dir.resolve(key.replaceAll("[^a-zA-Z0-9._\\-]", "_") + ".properties");
+    }
+
+    /**
+     * Loads an entry, but only if it exists, is not expired, and matches the fingerprint.
+     *
+     * @param key the key of the entry (e.g. the host)
+     * @param fingerprint the current fingerprint, or null to skip validating it
+     * @return the valid entry or null if it must be probed again
+     */
+    public Entry load(String key, String fingerprint) {
+        // anything in memory was probed (or validated) during this run
+        final Entry remembered = this.memory.get(key);
+        if (remembered != null && (fingerprint == null || fingerprint.equals(remembered.getFingerprint()))) {
+            return remembered;
+        }
+
+        if (this.reprobe) {
+            log.debug("Probe cache for {} skipped (reprobe requested)", key);
+            return null;
+        }
+
+        final Path file = this.file(key);
+        if (Files.notExists(file)) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        final long probedAt;
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+            probedAt = Long.parseLong(properties.getProperty("probedAt", "0"));
+        } catch (IOException | IllegalArgumentException e) {
+            // e.g. a corrupt or half-edited file (a bad unicode escape or probedAt) is just a miss
+            log.warn("Unable to read probe cache {} (will re-probe): {}", file, e.getMessage());
+            return null;
+        }
+
+        final String cachedFingerprint = properties.getProperty("fingerprint");
+
+        if (System.currentTimeMillis() - probedAt > this.ttlMillis) {
+            log.debug("Probe cache for {} expired", key);
+            return null;
+        }
+        if (fingerprint != null && !fingerprint.equals(cachedFingerprint)) {
+            log.debug("Probe cache for {} has a different fingerprint (was '{}', now '{}')", key, cachedFingerprint, fingerprint);
+            return null;
+        }
+
+        final Map<String,String> facts = new LinkedHashMap<>();
+        final Map<String,String> outputs = new LinkedHashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("fact.")) {
+                facts.put(name.substring(5), properties.getProperty(name));
+            } else if (name.startsWith("output.")) {
+                outputs.put(name.substring(7), properties.getProperty(name));
+            }
+        }
+
+        final Entry entry = new Entry(cachedFingerprint, probedAt, facts, outputs);
+        this.memory.put(key, entry);
+        return entry;
+    }
+
+    public void store(String key, Entry entry) {
+        this.memory.put(key, entry);
+
+        final Properties properties = new Properties();
+        if (entry.getFingerprint() != null) {
+            properties.setProperty("fingerprint", entry.getFingerprint());
+        }
+        properties.setProperty("probedAt", Long.toString(entry.getProbedAt()));
+        entry.getFacts().forEach((k, v) -> {
+            if (v != null) {
+                properties.setProperty("fact." + k, v);
+            }
+        });
+        entry.getOutputs().forEach((k, v) -> properties.setProperty("output." + k, v));
+
+        final Path file = this.file(key);
+        try {
+            Files.createDirectories(this.dir);
+            // write to a temp file and then move it in place, so a concurrent or killed run never sees half a file
+            final Path tempFile = Files.createTempFile(this.dir, file.getFileName().toString(), ".tmp");
+            try (OutputStream output = Files.newOutputStream(tempFile)) {
+                properties.store(output, "buildx probe cache for " + key);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write probe cache {}: {}", file, e.getMessage());
+        }
+    }
+
+}
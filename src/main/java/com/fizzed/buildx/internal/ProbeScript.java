@@ -0,0 +1,103 @@
+package com.fizzed.buildx.internal;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The parsed output of the "host-probe.sh" script, which collects every fact about a host in a single execution. Its
+ * captured files & commands are converted to outputs a RecordingSystemExecutor can replay to JNE.
+ */
+public class ProbeScript {
+
+    static public final String RESOURCE_NAME = "/com/fizzed/buildx/host-probe.sh";
+
+    private final Map<String,String> facts;
+    private final Map<String,String> outputs;
+
+    public ProbeScript(Map<String,String> facts, Map<String,String> outputs) {
+        this.facts = facts;
+        this.outputs = outputs;
+    }
+
+    public Map<String,String> getFacts() {
+        return facts;
+    }
+
+    public String getFact(String name) {
+        return facts.get(name);
+    }
+
+    /**
+     * The captured files & commands, formatted for a RecordingSystemExecutor to replay.
+     */
+    public Map<String,String> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * Gets the output of a captured command, but only if it ran successfully.
+     */
+    public String getSuccessfulOutput(String... command) {
+        final String output = this.outputs.get(RecordingSystemExecutor.execProcessKey(command));
+        final String successPrefix = RecordingSystemExecutor.exitOutput(0, "");
+        if (output != null && output.startsWith(successPrefix)) {
+            return output.substring(successPrefix.length());
+        }
+        return null;
+    }
+
+    static public String load() {
+        try (InputStream input = ProbeScript.class.getResourceAsStream(RESOURCE_NAME)) {
+            if (input == null) {
+                throw new IOException("Resource " + RESOURCE_NAME + " not found");
+            }
+            return IOUtils.toString(input, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static public ProbeScript parse(String output) {
+        final Map<String,String> facts = new LinkedHashMap<>();
+        final Map<String,Integer> exitValues = new LinkedHashMap<>();
+        final Map<String,StringBuilder> lines = new LinkedHashMap<>();
+
+        for (String line : output.split("\n")) {
+            // a pty or windows may have snuck in carriage returns
+            if (line.endsWith("\r")) {
+                line = line.substring(0, line.length() - 1);
+            }
+
+            final int equalsPos = line.indexOf('=');
+            if (equalsPos < 0) {
+                continue;       // e.g. a login banner
+            }
+
+            final String key = line.substring(0, equalsPos);
+            final String value = line.substring(equalsPos + 1);
+
+            if (key.startsWith("fact.")) {
+                facts.put(key.substring(5), value.isEmpty() ? null : value);
+            } else if (key.startsWith("exit.")) {
+                exitValues.put(key.substring(5), Integer.parseInt(value.trim()));
+            } else if (key.startsWith("line.")) {
+                lines.computeIfAbsent(key.substring(5), k -> new StringBuilder()).append(value).append('\n');
+            }
+        }
+
+        final Map<String,String> outputs = new LinkedHashMap<>();
+        exitValues.forEach((what, exitValue) -> {
+            final StringBuilder sb = lines.get(what);
+            outputs.put(what, RecordingSystemExecutor.exitOutput(exitValue, sb != null ? sb.toString() : ""));
+        });
+
+        return new ProbeScript(facts, outputs);
+    }
+
+}
@@ -8,17 +8,42 @@ import com.fizzed.buildx.SkipException;
 import com.fizzed.buildx.Target;
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ProjectImpl implements Project {
     private final Logger log = Contexts.logger();
 
     private final HostImpl host;
     private final ContainerImpl container;
     private final Target target;
+    private final String runName;
+    private final String containerSessionName;
+    private boolean containerSessionStarted;
+    private final List<String> runNames;
 
     public ProjectImpl(HostImpl host, ContainerImpl container, Target target) {
+        this(host, container, target, null, false);
+    }
+
+    /**
+     * @param runName a name unique to this job, which every container it starts (or process it runs on a remote host)
+     *                is named after (so they can be removed or killed if the job is cancelled)
+     * @param containerSession if true, a single long-lived container (named runName) is started (on the first exec)
+     *                         and every exec runs inside it, rather than a new container per exec
+     */
+    public ProjectImpl(HostImpl host, ContainerImpl container, Target target, String runName, boolean containerSession) {
         this.host = host;
         this.container = container;
         this.target = target;
+        this.runName = runName;
+        this.containerSessionName = containerSession && container != null ? runName : null;
+        this.containerSessionStarted = false;
+        this.runNames = new ArrayList<>();
+    }
+
+    public String getContainerSessionName() {
+        return containerSessionName;
     }
 
     @Override
@@ -38,17 +63,22 @@ public class ProjectImpl implements Project {
     public Exec exec(String exeOrNameOfExe, Object... arguments) {
         // container?
         if (this.target.getContainerImage() != null) {
-            final String projectPath;
-            if (this.host.getSshSession() != null) {
-                projectPath = this.host.getRemoteDir();
-            } else {
-                projectPath = this.host.getAbsoluteDir().toString();
+            final String projectPath = this.host.containerMountableDir();
+
+            // with a session, every exec runs in the same already running container (saves a create/start/teardown)
+            if (this.containerSessionName != null) {
+                this.startContainerSession(projectPath);
+
+                return this.host.exec(this.host.getInfo().resolveContainerExe(), "exec", this.containerSessionName,
+                        "/project/.buildx/container-exec.sh", "/project", exeOrNameOfExe)
+                    .args(arguments);
             }
 
             // LOCAL + Container (we need to map the local path! for docker)
             // adding ":z" fixes podman to mount as the user
             // https://stackoverflow.com/questions/75817076/no-matter-what-i-do-podman-is-mounting-volumes-as-root
             final Exec exec = this.host.exec(this.host.getInfo().resolveContainerExe(), "run",
+                "--name", this.nextRunName(),
                 // the working dir becomes the home dir, but on windows it stays as /root for some reason
                 "-v", projectPath + "/.buildx-cache" + ":/root",
                 "-w", "/root",
@@ -76,10 +106,109 @@ public class ProjectImpl implements Project {
 
             // add other arguments now
             return exec.args(arguments);
+        } else if (this.runName != null && this.host.isKillable()) {
+            // interrupting the job may not close the ssh channel, so what it runs is recorded to be killed if cancelled
+            return this.host.killableExec(pidFile(this.nextRunName()), exeOrNameOfExe)
+                .args(arguments);
         } else {
             return this.host.exec(exeOrNameOfExe)
                 .args(arguments);
         }
     }
 
+    static private String pidFile(String runName) {
+        return ".buildx/" + runName + ".pid";
+    }
+
+    synchronized private String nextRunName() {
+        final String name = this.runName + "-" + this.runNames.size();
+        this.runNames.add(name);
+        return name;
+    }
+
+    synchronized private void startContainerSession(String projectPath) {
+        if (this.containerSessionStarted) {
+            return;
+        }
+
+        log.info("Starting container session {} for {}", this.containerSessionName, this.target.getContainerImage());
+
+        // same volumes, env, etc. as a one-off "run" in exec(), but detached and kept alive until we remove it
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.CONTAINER_START).host(this.host.toString())
+                .detail(this.target.getContainerImage())) {
+            this.host.exec(this.host.getInfo().resolveContainerExe(), "run",
+                    "-d",
+                    "--name", this.containerSessionName,
+                    "-v", projectPath + "/.buildx-cache" + ":/root",
+                    "-w", "/root",
+                    "-e", "HOME=/root",
+                    "-v", projectPath + ":/project",
+                    "--rm",     // if it's ever stopped, it'll delete itself too
+                    "--userns=keep-id",
+                    this.target.getContainerImage(),
+                    "tail", "-f", "/dev/null")
+                .run();
+        }
+
+        this.containerSessionStarted = true;
+    }
+
+    /**
+     * Removes (forcefully) every container the project started, or kills every process it ran on a remote host, which
+     * kills whatever is running in them. Called from another thread while the job is still running, so anything it's
+     * waiting on finishes right away.
+     */
+    public void cancel() {
+        if (this.runName == null) {
+            return;
+        }
+
+        final List<String> names;
+        synchronized (this) {
+            names = new ArrayList<>(this.runNames);
+            if (this.containerSessionStarted) {
+                names.add(this.containerSessionName);
+            }
+        }
+
+        if (this.container == null) {
+            for (String name : names) {
+                try {
+                    // most have already exited (and removed their pid file)
+                    this.host.kill(pidFile(name));
+                } catch (Exception e) {
+                    log.warn("Unable to kill {} on host {}: {}", name, this.host, e.getMessage());
+                }
+            }
+            return;
+        }
+
+        for (String name : names) {
+            try {
+                // most one-off containers have already exited (and removed themselves)
+                this.host.exec(this.host.getInfo().resolveContainerExe(), "rm", "-f", name)
+                    .exitValuesAny()
+                    .run();
+            } catch (Exception e) {
+                log.warn("Unable to remove container {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Cleans up anything the project started, such as the container session (if one was started).
+     */
+    synchronized public void close() {
+        if (this.containerSessionStarted) {
+            try {
+                this.host.exec(this.host.getInfo().resolveContainerExe(), "rm", "-f", this.containerSessionName)
+                    .run();
+            } catch (Exception e) {
+                log.warn("Unable to remove container session {}: {}", this.containerSessionName, e.getMessage());
+            } finally {
+                this.containerSessionStarted = false;
+            }
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.ssh.SshSftpSession;
+import com.fizzed.jsync.engine.JsyncMode;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static com.fizzed.blaze.SecureShells.sshSftp;
+import static com.fizzed.blaze.jsync.Jsyncs.*;
+
+/**
+ * Syncs a project to a remote host. A full sync (jsync) has to list & stat the entire remote tree, which is slow over
+ * sftp, so a manifest of what was last pushed is kept locally. As long as the remote host still has the marker of that
+ * push, only what changed locally since then is pushed or deleted. A missing or different marker (e.g. the remote tree
+ * was wiped, or another machine synced to it) falls back to a full sync.
+ */
+public class ProjectSyncer {
+    private final Logger log = Contexts.logger();
+
+    // beyond this many changes, a single walk of the remote tree is cheaper than a round trip per change
+    static private final int MAX_DELTA_SIZE = 250;
+    static private final String MARKER_DIR = ".buildx-cache";
+    static private final String MARKER_FILE = MARKER_DIR + "/sync-marker";
+
+    private final SshSession sshSession;
+    private final Path absProjectDir;
+    private final String remoteProjectDir;
+    private final List<String> ignorePaths;
+    private final Path manifestFile;
+    private long syncedBytes;
+
+    public ProjectSyncer(SshSession sshSession, Path absProjectDir, String remoteProjectDir, List<String> ignorePaths, Path manifestFile) {
+        this.sshSession = sshSession;
+        this.absProjectDir = absProjectDir;
+        this.remoteProjectDir = remoteProjectDir;
+        this.ignorePaths = ignorePaths;
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * The size of the files pushed by the last sync, or -1 if it's unknown (a full sync leaves it to jsync to skip the
+     * files the remote side already has, so how much it actually pushed isn't known).
+     */
+    public long getSyncedBytes() {
+        return syncedBytes;
+    }
+
+    /**
+     * Syncs the project.
+     *
+     * @return a short summary of what was done (e.g. for logging)
+     */
+    public String sync() throws Exception {
+        final SyncManifest current = SyncManifest.scan(this.absProjectDir, this.ignorePaths);
+        final SyncManifest previous = SyncManifest.load(this.manifestFile);
+
+        this.syncedBytes = 0L;
+
+        try (SshSftpSession sftp = sshSftp(this.sshSession).run()) {
+            SyncManifest.Delta delta = null;
+
+            if (previous != null && previous.getMarker() != null) {
+                final String remoteMarker = this.readRemoteMarker(sftp);
+                if (!previous.getMarker().equals(remoteMarker)
+                        || !this.remoteProjectDir.equals(previous.getRemoteDir())
+                        || !current.getIgnorePaths().equals(previous.getIgnorePaths())) {
+                    log.info("Remote project {} no longer matches the last sync (will do a full sync)", this.remoteProjectDir);
+                } else {
+                    delta = current.diff(previous);
+                    if (delta.isEmpty()) {
+                        return "unchanged since last sync";
+                    }
+                    if (delta.size() > MAX_DELTA_SIZE) {
+                        log.info("Project has {} changes since last sync (will do a full sync)", delta.size());
+                        delta = null;
+                    }
+                }
+            }
+
+            // an interrupted sync must not leave a marker behind that would still match
+            this.removeRemoteMarker(sftp);
+
+            final String summary;
+            if (delta != null) {
+                this.pushDelta(sftp, delta);
+                this.syncedBytes = delta.getChangedFiles().stream().mapToLong(v -> fileSize(current, v)).sum();
+                summary = delta.getChangedFiles().size() + " changed, " + delta.getDeletedFiles().size() + " deleted since last sync";
+            } else {
+                jsync(localVolume(this.absProjectDir), sftpVolume(this.sshSession, this.remoteProjectDir), JsyncMode.MERGE)
+                    .parents()
+                    .force()
+                    .delete()
+                    .ignores(this.ignorePaths)       // ignore will ignore it on both sides (e.g. target on remote side stays once its created)
+                    .run();
+                this.syncedBytes = -1L;
+                summary = "full sync of " + current.getFiles().size() + " files";
+            }
+
+            final String marker = UUID.randomUUID().toString();
+            this.writeRemoteMarker(sftp, marker);
+
+            try {
+                current.withMarker(marker, this.remoteProjectDir).store(this.manifestFile);
+            } catch (IOException e) {
+                log.warn("Unable to write sync manifest {} (next sync will be a full sync): {}", this.manifestFile, e.getMessage());
+            }
+
+            return summary;
+        }
+    }
+
+    static private long fileSize(SyncManifest manifest, String path) {
+        // the manifest has a "size:mtime:permissions" per file
+        final String value = manifest.getFiles().get(path);
+        return value != null ? Long.parseLong(value.substring(0, value.indexOf(':'))) : 0L;
+    }
+
+    private void pushDelta(SshSftpSession sftp, SyncManifest.Delta delta) {
+        // new dirs are created up front, since an empty one would never be created by pushing a file in it
+        for (String path : delta.getAddedDirs()) {
+            log.debug("Creating {}/", path);
+            try {
+                sftp.mkdir(this.remotePath(path));
+            } catch (Exception e) {
+                log.debug("Unable to create remote dir {} (already exists?): {}", path, e.getMessage());
+            }
+        }
+
+        // jsync of a single file creates any missing parents and keeps its permissions (e.g. executable scripts)
+        for (String path : delta.getChangedFiles()) {
+            log.debug("Pushing {}", path);
+            jsync(localVolume(this.absProjectDir.resolve(path)), sftpVolume(this.sshSession, this.remotePath(path)), JsyncMode.MERGE)
+                .parents()
+                .force()
+                .run();
+        }
+
+        for (String path : delta.getDeletedFiles()) {
+            log.debug("Deleting {}", path);
+            try {
+                sftp.rm(this.remotePath(path));
+            } catch (Exception e) {
+                log.debug("Unable to delete remote file {} (already gone?): {}", path, e.getMessage());
+            }
+        }
+
+        for (String path : delta.getDeletedDirs()) {
+            log.debug("Deleting {}/", path);
+            try {
+                sftp.rmdir(this.remotePath(path));
+            } catch (Exception e) {
+                log.debug("Unable to delete remote dir {} (already gone?): {}", path, e.getMessage());
+            }
+        }
+    }
+
+    private String remotePath(String path) {
+        return this.remoteProjectDir + "/" + path;
+    }
+
+    private String readRemoteMarker(SshSftpSession sftp) {
+        try {
+            final Path tempFile = Files.createTempFile("buildx-sync-marker", ".tmp");
+            try {
+                sftp.get(this.remotePath(MARKER_FILE), tempFile);
+                return new String(Files.readAllBytes(tempFile), StandardCharsets.UTF_8).trim();
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (Exception e) {
+            // most likely it does not exist
+            return null;
+        }
+    }
+
+    private void removeRemoteMarker(SshSftpSession sftp) {
+        try {
+            sftp.rm(this.remotePath(MARKER_FILE));
+        } catch (Exception e) {
+            // most likely it does not exist
+        }
+    }
+
+    private void writeRemoteMarker(SshSftpSession sftp, String marker) throws IOException {
+        try {
+            sftp.mkdir(this.remotePath(MARKER_DIR));
+        } catch (Exception e) {
+            // most likely it already exists
+        }
+
+        final Path tempFile = Files.createTempFile("buildx-sync-marker", ".tmp");
+        try {
+            Files.write(tempFile, marker.getBytes(StandardCharsets.UTF_8));
+            sftp.put(tempFile, this.remotePath(MARKER_FILE));
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobListener;
+import com.fizzed.buildx.JobStatus;
+
+import java.util.*;
+
+/**
+ * A queue of jobs (in order) that only hands out a job once it's ready, i.e. every job it depends on has completed.
+ * A job waiting on its upstream jobs is passed over for the next ready one, so it never holds up the jobs behind it.
+ */
+public class ReadyQueue implements JobListener {
+
+    private final List<Job> jobs;
+    private final Set<Job> listeningTo;
+
+    public ReadyQueue() {
+        this.jobs = new ArrayList<>();
+        this.listeningTo = new HashSet<>();
+    }
+
+    synchronized public void add(Job job) {
+        this.jobs.add(job);
+        for (Job upstreamJob : job.getUpstreamJobs()) {
+            if (this.listeningTo.add(upstreamJob)) {
+                upstreamJob.addListener(this);
+            }
+        }
+    }
+
+    synchronized public int size() {
+        return this.jobs.size();
+    }
+
+    /**
+     * Takes the first ready job, waiting for one to become ready if needed.
+     *
+     * @return the job or null if the queue is empty
+     */
+    synchronized public Job take() throws InterruptedException {
+        while (!this.jobs.isEmpty()) {
+            for (Iterator<Job> it = this.jobs.iterator(); it.hasNext(); ) {
+                final Job job = it.next();
+                if (job.isReady()) {
+                    it.remove();
+                    return job;
+                }
+            }
+            this.wait();
+        }
+        return null;
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status) {
+        if (status.isCompleted()) {
+            synchronized (this) {
+                this.notifyAll();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.jne.internal.SystemExecutor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * A "JNE" executor that records the output of every file & process it is asked for, so those outputs can be replayed
+ * later (e.g. from a cache) without executing anything on the host again. Anything not already recorded falls thru
+ * to the delegate (if there is one).
+ */
+public class RecordingSystemExecutor implements SystemExecutor {
+
+    static private final String OK_PREFIX = "ok:";
+    static private final String ERROR_PREFIX = "error:";
+    static private final String EXIT_PREFIX = "exit:";
+
+    private final SystemExecutor delegate;
+    private final Map<String,String> outputs;
+
+    public RecordingSystemExecutor(SystemExecutor delegate) {
+        this(delegate, null);
+    }
+
+    public RecordingSystemExecutor(SystemExecutor delegate, Map<String,String> outputs) {
+        this.delegate = delegate;
+        this.outputs = new LinkedHashMap<>();
+        if (outputs != null) {
+            this.outputs.putAll(outputs);
+        }
+    }
+
+    /**
+     * Every output recorded (or replayed) so far, keyed by what was requested, so it can be persisted and replayed.
+     */
+    public Map<String,String> getOutputs() {
+        return outputs;
+    }
+
+    static public String catFileKey(String file) {
+        return "cat " + file;
+    }
+
+    static public String execProcessKey(String... command) {
+        return "exec " + String.join(" ", command);
+    }
+
+    static public String okOutput(String output) {
+        return OK_PREFIX + output;
+    }
+
+    static public String errorOutput(String message) {
+        return ERROR_PREFIX + message;
+    }
+
+    /**
+     * An output collected some other way (e.g. by a probe script) along with its exit value, which is only replayed
+     * as a success if the exit value is one that is expected when it's requested (like JNE, no expected exit values
+     * means any is fine, while a file is only read if cat exited with 0).
+     */
+    static public String exitOutput(int exitValue, String output) {
+        return EXIT_PREFIX + exitValue + ":" + output;
+    }
+
+    @Override
+    public String catFile(String file) throws Exception {
+        return this.replayOrRecord(catFileKey(file), singletonList(0), () -> this.delegate.catFile(file));
+    }
+
+    @Override
+    public String execProcess(List<Integer> exitValues, String... command) throws Exception {
+        return this.replayOrRecord(execProcessKey(command), exitValues, () -> this.delegate.execProcess(exitValues, command));
+    }
+
+    private interface Execute {
+        String execute() throws Exception;
+    }
+
+    private String replayOrRecord(String key, List<Integer> exitValues, Execute execute) throws Exception {
+        final String recorded = this.outputs.get(key);
+
+        if (recorded != null) {
+            if (recorded.startsWith(ERROR_PREFIX)) {
+                // JNE tries things that are expected to fail on some operating systems, so failures are replayed too
+                throw new Exception(recorded.substring(ERROR_PREFIX.length()));
+            }
+            if (recorded.startsWith(EXIT_PREFIX)) {
+                final int colonPos = recorded.indexOf(':', EXIT_PREFIX.length());
+                final int exitValue = Integer.parseInt(recorded.substring(EXIT_PREFIX.length(), colonPos));
+                final boolean expected = exitValues == null || exitValues.isEmpty() || exitValues.contains(exitValue);
+                if (!expected) {
+                    throw new Exception("Unexpected exit value " + exitValue + " for '" + key + "'");
+                }
+                return recorded.substring(colonPos + 1);
+            }
+            return recorded.substring(OK_PREFIX.length());
+        }
+
+        if (this.delegate == null) {
+            throw new IllegalStateException("No recorded output for '" + key + "' (and nothing to delegate to)");
+        }
+
+        try {
+            final String output = execute.execute();
+            this.outputs.put(key, okOutput(output));
+            return output;
+        } catch (Exception e) {
+            this.outputs.put(key, errorOutput(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName()));
+            throw e;
+        }
+    }
+
+}
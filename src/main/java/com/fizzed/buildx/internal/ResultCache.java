@@ -0,0 +1,171 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.Target;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import static com.fizzed.buildx.internal.Utils.targetKey;
+
+/**
+ * A cache of successful job results (e.g. in .buildx-cache/results), keyed by a fingerprint of everything that goes
+ * into a job: the project tree (what is synced, so honoring the ignore paths), the target, the digest of its
+ * container image, and a key the job execute may supply for anything else (see JobExecute.cacheKey). A job whose
+ * fingerprint matches a previous success doesn't run again, and instead has the artifacts it produced back then
+ * restored (see Target.setArtifacts).
+ */
+public class ResultCache {
+    static private final Logger log = LoggerFactory.getLogger(ResultCache.class);
+
+    static private final String RESULT_FILE = "result.properties";
+    static private final String ARTIFACTS_DIR = "artifacts";
+
+    private final Path dir;
+    private final Path projectDir;
+    private final String projectHash;
+
+    /**
+     * @param projectHash the hash of the project tree this run builds (see projectHash)
+     */
+    public ResultCache(Path dir, Path projectDir, String projectHash) {
+        this.dir = dir;
+        this.projectDir = projectDir;
+        this.projectHash = projectHash;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * A hash of the contents of every file of the project that is synced. Computed once per run, before any host is
+     * synced or any job restores artifacts into the project, so every job is fingerprinted against the same tree (the
+     * one that is synced).
+     */
+    static public String projectHash(Path projectDir, List<String> ignorePaths) throws IOException {
+        final MessageDigest md = sha256();
+        final byte[] buffer = new byte[65536];
+        for (String relPath : SyncManifest.scan(projectDir, ignorePaths).getFiles().keySet()) {
+            md.update(relPath.getBytes(StandardCharsets.UTF_8));
+            md.update((byte)0);
+            try (InputStream input = Files.newInputStream(projectDir.resolve(relPath))) {
+                int n;
+                while ((n = input.read(buffer)) > 0) {
+                    md.update(buffer, 0, n);
+                }
+            }
+            md.update((byte)0);
+        }
+        return hex(md.digest());
+    }
+
+    public String fingerprint(Job job, String imageDigest, String executeKey) {
+        final Target target = job.getTarget();
+        final StringBuilder sb = new StringBuilder();
+        sb.append("project=").append(this.projectHash).append('\n');
+        sb.append("target=").append(targetKey(target)).append('\n');
+        sb.append("tags=").append(target.getTags() != null ? new TreeSet<>(target.getTags()) : "").append('\n');
+        sb.append("data=").append(target.getData() != null ? new TreeMap<>(target.getData()) : "").append('\n');
+        sb.append("artifacts=").append(target.getArtifacts() != null ? target.getArtifacts() : "").append('\n');
+        sb.append("imageDigest=").append(Utils.stringify(imageDigest, "")).append('\n');
+        sb.append("executeKey=").append(Utils.stringify(executeKey, "")).append('\n');
+        return hex(sha256().digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Restores the artifacts of a previous success with the same fingerprint.
+     *
+     * @return true if there was one (and its artifacts were restored), otherwise false
+     */
+    public boolean restore(Job job, String fingerprint) throws IOException {
+        final Path resultDir = this.dir.resolve(fingerprint);
+        if (!Files.isRegularFile(resultDir.resolve(RESULT_FILE))) {
+            return false;
+        }
+
+        final Path artifactsDir = resultDir.resolve(ARTIFACTS_DIR);
+        for (String artifact : this.artifacts(job.getTarget())) {
+            final Path cached = artifactsDir.resolve(artifact);
+            final Path restored = this.projectDir.resolve(artifact);
+            if (Files.isDirectory(cached)) {
+                FileUtils.copyDirectory(cached.toFile(), restored.toFile());
+            } else if (Files.isRegularFile(cached)) {
+                Files.createDirectories(restored.getParent());
+                Files.copy(cached, restored, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the success of a job, along with copies of its artifacts.
+     */
+    public void store(Job job, String fingerprint) throws IOException {
+        final Path resultDir = this.dir.resolve(fingerprint);
+        final Path artifactsDir = resultDir.resolve(ARTIFACTS_DIR);
+        if (Files.exists(resultDir)) {
+            FileUtils.deleteDirectory(resultDir.toFile());
+        }
+        Files.createDirectories(artifactsDir);
+
+        for (String artifact : this.artifacts(job.getTarget())) {
+            final Path produced = this.projectDir.resolve(artifact);
+            final Path cached = artifactsDir.resolve(artifact);
+            if (Files.isDirectory(produced)) {
+                FileUtils.copyDirectory(produced.toFile(), cached.toFile());
+            } else if (Files.isRegularFile(produced)) {
+                Files.createDirectories(cached.getParent());
+                Files.copy(produced, cached, StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                log.warn("Artifact {} of {} does not exist (so it will not be cached)", artifact, job.getTarget());
+            }
+        }
+
+        final Properties properties = new Properties();
+        properties.setProperty("target", targetKey(job.getTarget()));
+        properties.setProperty("storedAt", Long.toString(System.currentTimeMillis()));
+        if (job.getTimer() != null) {
+            properties.setProperty("millis", Long.toString(job.getTimer().elapsed()));
+        }
+
+        // the result file is written last (and atomically), so a half-stored result is never restored
+        final Path tempFile = Files.createTempFile(resultDir, RESULT_FILE, ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempFile)) {
+            properties.store(output, "buildx result");
+        }
+        Files.move(tempFile, resultDir.resolve(RESULT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private List<String> artifacts(Target target) {
+        return target.getArtifacts() != null ? new ArrayList<>(target.getArtifacts()) : Collections.emptyList();
+    }
+
+    static private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static private String hex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobListener;
+import com.fizzed.buildx.JobStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static com.fizzed.buildx.internal.Utils.targetKey;
+
+/**
+ * An append-only journal of a run (e.g. .buildx-logs/[executeId]/journal). Every planned job is written up front and
+ * each job's status, duration and message as soon as it completes, so even a run that was killed halfway through
+ * records which of its targets still need to run. A line per entry, with tab separated fields:
+ *
+ * <pre>
+ * planned   [jobId] [targetKey]
+ * completed [jobId] [targetKey] [status] [millis] [message]
+ * </pre>
+ */
+public class RunJournal implements JobListener, Closeable {
+    static private final Logger log = LoggerFactory.getLogger(RunJournal.class);
+
+    static public final String FILE_NAME = "journal";
+
+    private final Path file;
+    private final List<Job> jobs;
+    private final BufferedWriter writer;
+
+    private RunJournal(Path file, List<Job> jobs, BufferedWriter writer) {
+        this.file = file;
+        this.jobs = jobs;
+        this.writer = writer;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Creates the journal (which immediately records the jobs as planned and starts listening to them).
+     */
+    static public RunJournal create(Path file, List<Job> jobs) throws IOException {
+        Files.createDirectories(file.getParent());
+        final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        final RunJournal journal = new RunJournal(file, jobs, writer);
+        for (Job job : jobs) {
+            journal.append("planned", Integer.toString(job.getId()), targetKey(job.getTarget()));
+        }
+        for (Job job : jobs) {
+            job.addListener(journal);
+        }
+        return journal;
+    }
+
+    @Override
+    public void onStatusChanged(Job job, JobStatus previousStatus, JobStatus status) {
+        if (!status.isCompleted()) {
+            return;
+        }
+        final long millis = job.getTimer() != null ? job.getTimer().elapsed() : 0L;
+        try {
+            this.append("completed", Integer.toString(job.getId()), targetKey(job.getTarget()), status.name(),
+                Long.toString(millis), Utils.stringify(job.getMessage(), ""));
+        } catch (IOException e) {
+            log.warn("Unable to append job #{} to journal {}: {}", job.getId(), this.file, e.getMessage());
+        }
+    }
+
+    synchronized private void append(String... fields) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (String field : fields) {
+            if (sb.length() > 0) {
+                sb.append('\t');
+            }
+            sb.append(escape(field));
+        }
+        this.writer.write(sb.append('\n').toString());
+        // flushed every time, since the whole point is to survive the run being killed
+        this.writer.flush();
+    }
+
+    @Override
+    synchronized public void close() throws IOException {
+        for (Job job : this.jobs) {
+            job.removeListener(this);
+        }
+        this.writer.close();
+    }
+
+    /**
+     * Reads a journal.
+     *
+     * @return the status of every planned target (by target key, in the order planned), with null for those that never
+     * completed
+     */
+    static public Map<String,JobStatus> load(Path file) throws IOException {
+        final Map<String,JobStatus> statuses = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            final String[] fields = line.split("\t", -1);
+            if (fields.length >= 3 && fields[0].equals("planned")) {
+                statuses.put(unescape(fields[2]), null);
+            } else if (fields.length >= 4 && fields[0].equals("completed")) {
+                try {
+                    statuses.put(unescape(fields[2]), JobStatus.valueOf(fields[3]));
+                } catch (IllegalArgumentException e) {
+                    // a status from another version of buildx, or a line cut short by the run being killed
+                    log.debug("Ignoring invalid journal line: {}", line);
+                }
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Finds the journal of the most recent run (the execute ids are timestamps).
+     *
+     * @param logsDir e.g. .buildx-logs
+     * @return the journal or null if there is none
+     */
+    static public Path findLatest(Path logsDir) throws IOException {
+        if (!Files.isDirectory(logsDir)) {
+            return null;
+        }
+        try (Stream<Path> dirs = Files.list(logsDir)) {
+            return dirs
+                .filter(v -> v.getFileName().toString().matches("\\d+") && Files.isRegularFile(v.resolve(FILE_NAME)))
+                .max(Comparator.comparingLong(v -> Long.parseLong(v.getFileName().toString())))
+                .map(v -> v.resolve(FILE_NAME))
+                .orElse(null);
+        }
+    }
+
+    static private String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static private String unescape(String value) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                final char next = value.charAt(++i);
+                sb.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.fizzed.buildx.internal;
+
+/**
+ * A timed phase of a job on a host (e.g. connect, probe, sync, pull, execute). Phases that happen once per host (such
+ * as connecting and syncing) are shared by every job on that host.
+ */
+public class Span {
+
+    private final String name;
+    private final String host;
+    private final boolean shared;
+    private final long startedAt;
+    private volatile long endedAt;
+    private volatile long bytes;
+
+    public Span(String name, String host, boolean shared, long startedAt, long endedAt) {
+        this.name = name;
+        this.host = host != null ? host : "<local>";
+        this.shared = shared;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+        this.bytes = -1L;
+    }
+
+    static public Span start(String name, String host) {
+        return new Span(name, host, false, System.currentTimeMillis(), -1L);
+    }
+
+    static public Span startShared(String name, String host) {
+        return new Span(name, host, true, System.currentTimeMillis(), -1L);
+    }
+
+    public Span end() {
+        this.endedAt = System.currentTimeMillis();
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public boolean isShared() {
+        return shared;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getEndedAt() {
+        return endedAt;
+    }
+
+    /**
+     * @return how many bytes were transferred (e.g. by a sync) or -1 if it doesn't apply
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public Span setBytes(long bytes) {
+        this.bytes = bytes;
+        return this;
+    }
+
+    public boolean isEnded() {
+        return this.endedAt >= 0;
+    }
+
+    /**
+     * @return how long it took (or has taken so far, if it hasn't ended)
+     */
+    public long getMillis() {
+        return (this.isEnded() ? this.endedAt : System.currentTimeMillis()) - this.startedAt;
+    }
+
+    @Override
+    public String toString() {
+        return this.name + "=" + DisplayRenderer.SECS_FMT.format(this.getMillis() / 1000d) + "s" + (this.shared ? "*" : "");
+    }
+
+}
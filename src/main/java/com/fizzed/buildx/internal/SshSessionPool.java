@@ -0,0 +1,83 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.Contexts;
+import com.fizzed.blaze.ssh.SshSession;
+import com.fizzed.blaze.util.Timer;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.fizzed.blaze.SecureShells.sshConnect;
+
+/**
+ * A pool of ssh sessions keyed by host, so every target on the same host shares one session (each exec, sftp, etc.
+ * opens its own channel over it). Sessions are connected lazily the first time a host is acquired, and all of them
+ * are closed when the pool is closed at the end of a run.
+ */
+public class SshSessionPool implements Closeable {
+    private final Logger log = Contexts.logger();
+
+    private final Map<String,PooledSession> sessions;
+
+    public SshSessionPool() {
+        this.sessions = new ConcurrentHashMap<>();
+    }
+
+    static private class PooledSession {
+        private final String host;
+        private SshSession sshSession;
+        private boolean closed;
+
+        public PooledSession(String host) {
+            this.host = host;
+        }
+
+        // only the first caller for a host connects, everyone else for that host waits on it (other hosts do not)
+        synchronized public SshSession get(Logger log) {
+            if (this.closed) {
+                throw new IllegalStateException("Ssh session pool already closed (for host " + this.host + ")");
+            }
+            if (this.sshSession == null) {
+                final Timer timer = new Timer();
+                try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.SSH_CONNECT).host(this.host)) {
+                    this.sshSession = sshConnect("ssh://" + this.host).run();
+                }
+                log.info("Connected to host {} (in {})", this.host, timer);
+            }
+            return this.sshSession;
+        }
+
+        synchronized public boolean close(Logger log) {
+            this.closed = true;
+            if (this.sshSession != null) {
+                try {
+                    this.sshSession.close();
+                    return true;
+                } catch (Exception e) {
+                    log.warn("Unable to cleanly close ssh session to {}: {}", this.host, e.getMessage());
+                } finally {
+                    this.sshSession = null;
+                }
+            }
+            return false;
+        }
+    }
+
+    public SshSession acquire(String host) {
+        return this.sessions.computeIfAbsent(host, PooledSession::new).get(log);
+    }
+
+    @Override
+    public void close() {
+        int closed = 0;
+        for (PooledSession pooledSession : this.sessions.values()) {
+            if (pooledSession.close(log)) {
+                closed++;
+            }
+        }
+        log.debug("Closed {} pooled ssh session(s)", closed);
+    }
+
+}
@@ -0,0 +1,286 @@
+package com.fizzed.buildx.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * A snapshot of the files & directories of a project (relative path, size, last modified time and permissions),
+ * honoring the same ignore paths as a sync. The manifest of what was last pushed to a host is stored locally (e.g.
+ * under .buildx-cache/sync), along with the marker written to the remote host, so the next sync can compute what
+ * changed without walking the remote tree.
+ */
+public class SyncManifest {
+    static private final Logger log = LoggerFactory.getLogger(SyncManifest.class);
+
+    private final String marker;
+    private final String remoteDir;
+    private final List<String> ignorePaths;
+    private final Map<String,String> files;
+    private final Set<String> dirs;
+
+    public SyncManifest(String marker, String remoteDir, List<String> ignorePaths, Map<String,String> files, Set<String> dirs) {
+        this.marker = marker;
+        this.remoteDir = remoteDir;
+        this.ignorePaths = ignorePaths;
+        this.files = files;
+        this.dirs = dirs;
+    }
+
+    public String getMarker() {
+        return marker;
+    }
+
+    public String getRemoteDir() {
+        return remoteDir;
+    }
+
+    public List<String> getIgnorePaths() {
+        return ignorePaths;
+    }
+
+    /**
+     * The files keyed by relative path (always using "/"), with a value of "size:lastModifiedMillis:permissions" (e.g.
+     * "10:1700000000000:rwxr-xr-x", without the permissions if the file system has none), so a chmod is a change too.
+     */
+    public Map<String,String> getFiles() {
+        return files;
+    }
+
+    public Set<String> getDirs() {
+        return dirs;
+    }
+
+    public SyncManifest withMarker(String marker, String remoteDir) {
+        return new SyncManifest(marker, remoteDir, this.ignorePaths, this.files, this.dirs);
+    }
+
+    static public class Delta {
+        private final List<String> addedDirs;
+        private final List<String> changedFiles;
+        private final List<String> deletedFiles;
+        private final List<String> deletedDirs;
+
+        public Delta(List<String> addedDirs, List<String> changedFiles, List<String> deletedFiles, List<String> deletedDirs) {
+            this.addedDirs = addedDirs;
+            this.changedFiles = changedFiles;
+            this.deletedFiles = deletedFiles;
+            this.deletedDirs = deletedDirs;
+        }
+
+        /**
+         * Directories that are new (even empty ones, which no changed file creates), parents first so each can be
+         * created in turn.
+         */
+        public List<String> getAddedDirs() {
+            return addedDirs;
+        }
+
+        /**
+         * Files that are new or whose size, last modified time or permissions changed.
+         */
+        public List<String> getChangedFiles() {
+            return changedFiles;
+        }
+
+        public List<String> getDeletedFiles() {
+            return deletedFiles;
+        }
+
+        /**
+         * Directories that no longer exist, deepest first so each is empty by the time it's removed.
+         */
+        public List<String> getDeletedDirs() {
+            return deletedDirs;
+        }
+
+        public int size() {
+            return this.addedDirs.size() + this.changedFiles.size() + this.deletedFiles.size() + this.deletedDirs.size();
+        }
+
+        public boolean isEmpty() {
+            return this.size() == 0;
+        }
+    }
+
+    /**
+     * Computes what must be pushed or deleted to turn a tree that matches the previous manifest into this one.
+     */
+    public Delta diff(SyncManifest previous) {
+        // a sorted set puts parents before their children
+        final List<String> addedDirs = new ArrayList<>();
+        for (String path : this.dirs) {
+            if (!previous.dirs.contains(path)) {
+                addedDirs.add(path);
+            }
+        }
+
+        final List<String> changedFiles = new ArrayList<>();
+        this.files.forEach((path, value) -> {
+            if (!value.equals(previous.files.get(path))) {
+                changedFiles.add(path);
+            }
+        });
+
+        final List<String> deletedFiles = new ArrayList<>();
+        for (String path : previous.files.keySet()) {
+            if (!this.files.containsKey(path)) {
+                deletedFiles.add(path);
+            }
+        }
+
+        final List<String> deletedDirs = new ArrayList<>();
+        for (String path : previous.dirs) {
+            if (!this.dirs.contains(path)) {
+                deletedDirs.add(path);
+            }
+        }
+        // reverse order of a sorted set puts children before their parents
+        deletedDirs.sort(Comparator.reverseOrder());
+
+        return new Delta(addedDirs, changedFiles, deletedFiles, deletedDirs);
+    }
+
+    /**
+     * If a path is ignored, matching the ignore paths the way a sync does (like a .gitignore): "target/" only ignores
+     * directories, while "foo.txt" ignores anything. An ignore path without a "/" (other than a trailing one) matches
+     * a name at any depth (e.g. "target/" ignores module-a/target too), otherwise it's relative to the project (e.g.
+     * "/target/" or "docs/build/"). A "*" matches anything within a name (e.g. "*.log").
+     */
+    static boolean isIgnored(String relPath, boolean directory, List<String> ignorePaths) {
+        if (ignorePaths != null) {
+            final String name = relPath.substring(relPath.lastIndexOf('/') + 1);
+            for (String ignorePath : ignorePaths) {
+                final boolean directoryOnly = ignorePath.endsWith("/");
+                if (directoryOnly && !directory) {
+                    continue;
+                }
+                String pattern = directoryOnly ? ignorePath.substring(0, ignorePath.length() - 1) : ignorePath;
+                final boolean anchored = pattern.contains("/");
+                if (pattern.startsWith("/")) {
+                    pattern = pattern.substring(1);
+                }
+                if (matches(anchored ? relPath : name, pattern)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static private boolean matches(String value, String pattern) {
+        if (pattern.indexOf('*') < 0) {
+            return value.equals(pattern);
+        }
+        final String[] parts = pattern.split("\\*", -1);
+        final StringBuilder regex = new StringBuilder(Pattern.quote(parts[0]));
+        for (int i = 1; i < parts.length; i++) {
+            regex.append("[^/]*").append(Pattern.quote(parts[i]));
+        }
+        return value.matches(regex.toString());
+    }
+
+    static public SyncManifest scan(Path projectDir, List<String> ignorePaths) throws IOException {
+        final Map<String,String> files = new TreeMap<>();
+        final Set<String> dirs = new TreeSet<>();
+        final boolean posix = projectDir.getFileSystem().supportedFileAttributeViews().contains("posix");
+
+        Files.walkFileTree(projectDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (dir.equals(projectDir)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                final String relPath = relativePath(projectDir, dir);
+                if (isIgnored(relPath, true, ignorePaths)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                dirs.add(relPath);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final String relPath = relativePath(projectDir, file);
+                if (!isIgnored(relPath, false, ignorePaths)) {
+                    String value = attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+                    if (posix && !attrs.isSymbolicLink()) {
+                        value += ":" + PosixFilePermissions.toString(Files.getPosixFilePermissions(file));
+                    }
+                    files.put(relPath, value);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        return new SyncManifest(null, null, ignorePaths != null ? ignorePaths : Collections.emptyList(), files, dirs);
+    }
+
+    static private String relativePath(Path projectDir, Path path) {
+        return projectDir.relativize(path).toString().replace('\\', '/');
+    }
+
+    /**
+     * Loads a stored manifest.
+     *
+     * @return the manifest or null if it does not exist (or cannot be read)
+     */
+    static public SyncManifest load(Path file) {
+        if (Files.notExists(file)) {
+            return null;
+        }
+
+        final Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException e) {
+            log.warn("Unable to read sync manifest {} (will do a full sync): {}", file, e.getMessage());
+            return null;
+        }
+
+        final Map<String,String> files = new TreeMap<>();
+        final Set<String> dirs = new TreeSet<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith("file.")) {
+                files.put(name.substring(5), properties.getProperty(name));
+            } else if (name.startsWith("dir.")) {
+                dirs.add(name.substring(4));
+            }
+        }
+
+        final String ignores = properties.getProperty("ignorePaths", "");
+        final List<String> ignorePaths = ignores.isEmpty() ? Collections.emptyList() : Arrays.asList(ignores.split("\n"));
+
+        return new SyncManifest(properties.getProperty("marker"), properties.getProperty("remoteDir"), ignorePaths, files, dirs);
+    }
+
+    public void store(Path file) throws IOException {
+        final Properties properties = new Properties();
+        if (this.marker != null) {
+            properties.setProperty("marker", this.marker);
+        }
+        if (this.remoteDir != null) {
+            properties.setProperty("remoteDir", this.remoteDir);
+        }
+        properties.setProperty("ignorePaths", String.join("\n", this.ignorePaths));
+        this.files.forEach((path, value) -> properties.setProperty("file." + path, value));
+        this.dirs.forEach(path -> properties.setProperty("dir." + path, ""));
+
+        Files.createDirectories(file.getParent());
+        // write to a temp file and then move it in place, so a concurrent or killed run never sees half a file
+        final Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try (OutputStream output = Files.newOutputStream(tempFile)) {
+            properties.store(output, "buildx sync manifest");
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+}
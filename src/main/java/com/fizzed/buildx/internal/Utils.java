@@ -1,5 +1,7 @@
 package com.fizzed.buildx.internal;
 
+import com.fizzed.buildx.Target;
+
 public class Utils {
 
     static public String stringify(Object obj, String defaultValue) {
@@ -16,4 +18,14 @@ public class Utils {
         return obj.toString().toLowerCase();
     }
 
-}
\ No newline at end of file
+    /**
+     * Identifies a target across runs. The same target may run on different hosts (or containers), which can behave
+     * very differently.
+     */
+    static public String targetKey(Target target) {
+        final String where = target.getHostPool() != null ? "pool:" + target.getHostPool()
+            : (target.getHost() != null ? target.getHost() : "local");
+        return where + "/" + target + (target.getContainerImage() != null ? "@" + target.getContainerImage() : "");
+    }
+
+}
@@ -0,0 +1,147 @@
+package com.fizzed.buildx.internal.jfr;
+
+import com.fizzed.buildx.internal.JfrEvents;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The jdk.jfr events behind {@link JfrEvents} (only compiled on java 11+ and loaded reflectively).
+ */
+public class JfrEventFactory implements JfrEvents.Factory {
+
+    @Override
+    public JfrEvents.Event begin(JfrEvents.Type type) {
+        final BuildxEvent event;
+        switch (type) {
+            case RUN:
+                event = new RunEvent();
+                break;
+            case SSH_CONNECT:
+                event = new SshConnectEvent();
+                break;
+            case HOST_PROBE:
+                event = new HostProbeEvent();
+                break;
+            case CONTAINER_PROBE:
+                event = new ContainerProbeEvent();
+                break;
+            case CONTAINER_START:
+                event = new ContainerStartEvent();
+                break;
+            case SYNC:
+                event = new SyncEvent();
+                break;
+            case HOST_EXEC:
+                event = new HostExecEvent();
+                break;
+            case HOST_RSYNC:
+                event = new HostRsyncEvent();
+                break;
+            case EXECUTOR_WAIT:
+                event = new ExecutorWaitEvent();
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported event type " + type);
+        }
+        event.begin();
+        return event;
+    }
+
+    @Category("Buildx")
+    static abstract class BuildxEvent extends jdk.jfr.Event implements JfrEvents.Event {
+
+        @Label("Host")
+        String host;
+
+        @Label("Detail")
+        String detail;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Outcome")
+        String outcome;
+
+        // isEnabled() is jdk.jfr.Event's own (true only if a recording has this event enabled)
+
+        @Override
+        public JfrEvents.Event host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        @Override
+        public JfrEvents.Event detail(String detail) {
+            this.detail = detail;
+            return this;
+        }
+
+        @Override
+        public JfrEvents.Event bytes(long bytes) {
+            this.bytes = bytes;
+            return this;
+        }
+
+        @Override
+        public JfrEvents.Event outcome(String outcome) {
+            this.outcome = outcome;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            // commit() ends the event too (and is a no-op unless it's enabled in a recording)
+            this.commit();
+        }
+
+    }
+
+    @Name("com.fizzed.buildx.Run")
+    @Label("Run")
+    @Description("A run of buildx (detail is its execute id)")
+    static class RunEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.SshConnect")
+    @Label("Ssh Connect")
+    static class SshConnectEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.HostProbe")
+    @Label("Host Probe")
+    @Description("Probing a host for its os, arch, etc.")
+    static class HostProbeEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.ContainerProbe")
+    @Label("Container Probe")
+    @Description("Probing a container image for its os, arch, etc. (detail is the image)")
+    static class ContainerProbeEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.ContainerStart")
+    @Label("Container Start")
+    @Description("Starting a container (detail is the image)")
+    static class ContainerStartEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.Sync")
+    @Label("Sync")
+    @Description("Syncing the project to a host")
+    static class SyncEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.HostExec")
+    @Label("Host Exec")
+    @Description("A command issued on a host (detail is the command)")
+    static class HostExecEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.HostRsync")
+    @Label("Host Rsync")
+    @Description("Files copied back from a host (detail is the source path)")
+    static class HostRsyncEvent extends BuildxEvent { }
+
+    @Name("com.fizzed.buildx.ExecutorWait")
+    @Label("Executor Wait")
+    @Description("A job executor waiting for its jobs to complete (detail is the executor)")
+    static class ExecutorWaitEvent extends BuildxEvent { }
+
+}
@@ -3,6 +3,30 @@
 BASEDIR=$(dirname "$0")
 cd "$BASEDIR/.." || exit 1
 
+#
+# kill whatever a (cancelled) exec that recorded a pid file still runs, which closes its ssh channel too
+#
+if [ "$1" = "--kill" ]; then
+  [ -f "$2" ] || exit 0
+  PGID=$(ps -o pgid= -p "$(cat "$2")" | tr -d ' ')
+  rm -f "$2"
+  # never our own process group (if the exec already finished, its pid may even be ours)
+  if [ -n "$PGID" ] && [ "$PGID" != "$(ps -o pgid= -p $$ | tr -d ' ')" ]; then
+    kill -TERM "-$PGID"
+  fi
+  exit 0
+fi
+
+#
+# record our pid, since sshd runs every exec in a process group of its own (so it can all be killed with --kill)
+#
+PID_FILE=""
+if [ "$1" = "--pid-file" ]; then
+  PID_FILE="$2"
+  echo $$ > "$PID_FILE"
+  shift 2
+fi
+
 #
 # switch to preferred shell with a login (which is critical for buildx commands to work)
 #
@@ -15,4 +39,11 @@ fi
 
 "${SHELL_BIN}" -l << EOF
 $@
-EOF
\ No newline at end of file
+EOF
+EXIT_VALUE=$?
+
+if [ -n "$PID_FILE" ]; then
+  rm -f "$PID_FILE"
+fi
+
+exit $EXIT_VALUE
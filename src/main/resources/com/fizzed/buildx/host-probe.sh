@@ -0,0 +1,75 @@
+#!/bin/sh
+
+#
+# Probes a host (or container) for everything buildx needs in a single execution (rather than a round trip or
+# container start per fact). Each fact is printed as key=value. Captured files & commands are printed as
+# "exit.<what>=<exit code>" followed by one "line.<what>=<line>" for each line of their output, where <what> is
+# "cat <file>" or "exec <command>".
+#
+
+fact() {
+  echo "fact.$1=$2"
+}
+
+capture() {
+  what="$1"
+  shift
+  # the output is left in $output for whatever needs to look at it next
+  output=$("$@" 2>&1)
+  code=$?
+  echo "exit.$what=$code"
+  if [ -n "$output" ]; then
+    printf '%s\n' "$output" | while IFS= read -r line; do
+      echo "line.$what=$line"
+    done
+  fi
+}
+
+catfile() {
+  capture "cat $1" cat "$1"
+}
+
+execute() {
+  capture "exec $*" "$@"
+}
+
+fact "fileSeparator" "/"
+fact "currentDir" "$(pwd)"
+fact "homeDir" "$(cd ~ && pwd)"
+fact "fingerprint" "$(uname -a 2>/dev/null)"
+
+# resources (linux, then macos/bsds)
+fact "cpus" "$(nproc 2>/dev/null || getconf _NPROCESSORS_ONLN 2>/dev/null || sysctl -n hw.ncpu 2>/dev/null)"
+if [ -r /proc/meminfo ]; then
+  fact "memoryBytes" "$(awk '/^MemTotal:/ { printf "%.0f", $2 * 1024 }' /proc/meminfo)"
+else
+  fact "memoryBytes" "$(sysctl -n hw.memsize 2>/dev/null || sysctl -n hw.physmem 2>/dev/null)"
+fi
+
+# exactly what platform detection (JNE's PlatformInfo.detect) asks for on linux, macos, bsds & solaris, so replaying
+# it never needs another round trip (asking for what another os needs is cheap, and harmless if it fails)
+execute uname -a
+catfile /etc/os-release
+catfile /etc/release
+execute /sbin/sysctl -n hw.machine_arch
+execute isainfo -k
+execute sw_vers
+execute ldd /bin/ls
+# JNE then executes the libc that ldd resolved for its version, found the same way as its LibCs.parsePath() does
+libc=$(printf '%s\n' "$output" | awk -F'=>' '/=>/ {
+  name = tolower($1)
+  gsub(/^[ \t]+|[ \t]+$/, "", name)
+  if ((index(name, "libc") > 0 && index($0, "musl") > 0) || index(name, "libuclibc.so") == 1 || index(name, "libc.so") == 1) {
+    if (split($2, parts, " ") > 0) {
+      print parts[1]
+      exit
+    }
+  }
+}')
+if [ -n "$libc" ]; then
+  execute "$libc"
+fi
+
+# container runtimes
+execute podman -v
+execute docker -v
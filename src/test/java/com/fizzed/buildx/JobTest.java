@@ -0,0 +1,41 @@
+package com.fizzed.buildx;
+
+import com.fizzed.buildx.internal.ProjectImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static com.fizzed.buildx.TestJobs.job;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class JobTest {
+
+    @Test
+    public void cancelNeverLeavesAnInterruptBehindForTheNextJob() throws Exception {
+        final Target target = new Target("linux", "x64");
+
+        // just like the executors, jobs are run one after the other on the same thread, while being cancelled just as
+        // they finish (e.g. by fail fast)
+        for (int i = 0; i < 2000; i++) {
+            final CountDownLatch ending = new CountDownLatch(1);
+            final Job job = job(i, target, (host, project, t) -> ending.countDown());
+            job.prepared(null, null, new ProjectImpl(null, null, target));
+
+            final Thread canceller = new Thread(() -> {
+                try {
+                    ending.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                job.cancel("Cancelled");
+            });
+            canceller.start();
+            job.run();
+            canceller.join();
+
+            assertThat("Job #" + i + " left an interrupt behind", Thread.interrupted(), is(false));
+        }
+    }
+
+}
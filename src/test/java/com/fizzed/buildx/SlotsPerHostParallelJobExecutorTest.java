@@ -0,0 +1,62 @@
+package com.fizzed.buildx;
+
+import com.fizzed.buildx.internal.HostImpl;
+import com.fizzed.buildx.internal.ProjectImpl;
+import org.junit.jupiter.api.Test;
+
+import static com.fizzed.buildx.TestJobs.job;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class SlotsPerHostParallelJobExecutorTest {
+
+    static private final long GB = 1024L * 1024L * 1024L;
+
+    static private HostInfo hostInfo(Integer cpus, Long memoryBytes) {
+        return new HostInfo(null, "/home/builder", "/home/builder", "/", "4.9.3", null, cpus, memoryBytes);
+    }
+
+    @Test
+    public void defaultSlots() {
+        final SlotsPerHostParallelJobExecutor executor = new SlotsPerHostParallelJobExecutor();
+
+        // limited by cpus, memory, or the max
+        assertThat(executor.defaultSlots(hostInfo(16, 256L * GB)), is(4));
+        assertThat(executor.defaultSlots(hostInfo(64, 16L * GB)), is(4));
+        assertThat(executor.defaultSlots(hostInfo(128, 1024L * GB)), is(16));
+
+        // never less than one, even when unknown
+        assertThat(executor.defaultSlots(hostInfo(2, 2L * GB)), is(1));
+        assertThat(executor.defaultSlots(hostInfo(null, null)), is(1));
+        assertThat(executor.defaultSlots(hostInfo(null, 64L * GB)), is(16));
+
+        assertThat(new SlotsPerHostParallelJobExecutor().cpusPerSlot(8).maxSlots(6).defaultSlots(hostInfo(64, 512L * GB)), is(6));
+    }
+
+    @Test
+    public void jobCancelledBeforePreparedDoesNotBlockSlots() throws Exception {
+        final Target target = new Target("linux", "x64");
+        final Job cancelled = job(0, target);
+        final Job succeeded = job(1, target, (host, project, t) -> {});
+
+        // slots derived from the host, so each host waits on its first prepared job to probe it
+        final SlotsPerHostParallelJobExecutor executor = new SlotsPerHostParallelJobExecutor().autoSlots(true);
+        final SlotsPerHostParallelJobExecutor.HostSlots hostSlots = executor.new HostSlots("local");
+        hostSlots.add(cancelled);
+        hostSlots.add(succeeded);
+
+        // e.g. fail-fast cancels the first job on the host before it was ever prepared (so it never will be)
+        cancelled.cancel("Job #9 failed");
+        final HostImpl host = new HostImpl(null, hostInfo(16, 64L * GB), null, null, null, null);
+        succeeded.prepared(host, null, new ProjectImpl(host, null, target));
+
+        final Thread slotsThread = new Thread(hostSlots);
+        slotsThread.start();
+        slotsThread.join(10000L);
+
+        assertThat(slotsThread.isAlive(), is(false));
+        assertThat(cancelled.getStatus(), is(JobStatus.CANCELLED));
+        assertThat(succeeded.getStatus(), is(JobStatus.SUCCESS));
+    }
+
+}
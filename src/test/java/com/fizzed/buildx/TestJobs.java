@@ -0,0 +1,33 @@
+package com.fizzed.buildx;
+
+import com.fizzed.buildx.internal.OutputMeter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+
+/**
+ * Jobs for tests, whose output is kept in memory (and never written to a log file).
+ */
+public class TestJobs {
+
+    static public JobOutput output(int id) {
+        final PrintStream output = new PrintStream(new ByteArrayOutputStream());
+        return new JobOutput(Paths.get("job-" + id + ".log"), output, output, false);
+    }
+
+    static public JobOutput meteredOutput(int id) {
+        final OutputMeter meter = new OutputMeter(new ByteArrayOutputStream());
+        final PrintStream output = new PrintStream(meter);
+        return new JobOutput(Paths.get("job-" + id + ".log"), output, output, false, meter);
+    }
+
+    static public Job job(int id, Target target) {
+        return job(id, target, null);
+    }
+
+    static public Job job(int id, Target target, JobExecute jobExecute) {
+        return new Job(id, target, output(id), jobExecute);
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.fizzed.buildx.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class AsyncLogWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void writesEverythingByFlush() throws Exception {
+        final Path file = this.tempDir.resolve("job-0.log");
+        final OutputMeter meter = new OutputMeter(new AsyncLogWriter(Files.newOutputStream(file), "test-log"));
+        final PrintStream output = new PrintStream(meter);
+
+        // enough to fill the queue of chunks many times over
+        for (int i = 0; i < 100000; i++) {
+            output.println("line " + i);
+        }
+        output.print("partial");
+        output.flush();
+
+        final List<String> lines = Files.readAllLines(file);
+        assertThat(lines.size(), is(100001));
+        assertThat(lines.get(99999), is("line 99999"));
+        assertThat(lines.get(100000), is("partial"));
+        assertThat(meter.getLines(), is(100000L));
+        assertThat(meter.getBytes(), is(Files.size(file)));
+
+        output.close();
+    }
+
+}
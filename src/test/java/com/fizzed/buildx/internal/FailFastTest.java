@@ -0,0 +1,54 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static com.fizzed.buildx.TestJobs.job;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class FailFastTest {
+
+    @Test
+    public void failureCancelsPendingAndRunningJobs() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Target target = new Target("linux", "x64");
+
+        final Job failing = job(0, target);
+        final Job running = job(1, target, (host, project, t) -> {
+            started.countDown();
+            Thread.sleep(60000L);
+        });
+        final Job pending = job(2, target);
+        final List<Job> jobs = asList(failing, running, pending);
+
+        final FailFast failFast = new FailFast(jobs);
+
+        running.prepared(null, null, new ProjectImpl(null, null, target));
+        final Thread runningThread = new Thread(running);
+        runningThread.start();
+        started.await();
+
+        failing.prepareFailed(new IllegalStateException("Host is down"));
+        failing.run();
+
+        runningThread.join(10000L);
+
+        assertThat(failFast.isTriggered(), is(true));
+        assertThat(failing.getStatus(), is(JobStatus.FAILED));
+        assertThat(running.getStatus(), is(JobStatus.CANCELLED));
+        assertThat(running.getMessage(), containsString("job #0"));
+        assertThat(pending.getStatus(), is(JobStatus.CANCELLED));
+
+        // a cancelled job never runs
+        pending.run();
+        assertThat(pending.getStatus(), is(JobStatus.CANCELLED));
+    }
+
+}
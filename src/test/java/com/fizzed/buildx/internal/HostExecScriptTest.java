@@ -0,0 +1,77 @@
+package com.fizzed.buildx.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HostExecScriptTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path hostExecScript() throws Exception {
+        final Path script = this.tempDir.resolve(".buildx/host-exec.sh");
+        Files.createDirectories(script.getParent());
+        try (InputStream input = HostExecScriptTest.class.getResourceAsStream("/com/fizzed/buildx/host-exec.sh")) {
+            Files.copy(input, script);
+        }
+        return script;
+    }
+
+    static private Process start(String... command) throws Exception {
+        final ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true)
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        processBuilder.environment().put("SHELL", "/bin/sh");
+        return processBuilder.start();
+    }
+
+    @Test
+    public void killsWhatCancelledExecStillRuns() throws Exception {
+        assumeTrue(Files.isExecutable(Paths.get("/bin/sh")), "Requires a posix shell");
+        assumeTrue(Files.isExecutable(Paths.get("/usr/bin/setsid")), "Requires setsid");
+
+        final Path script = this.hostExecScript();
+        final Path pidFile = this.tempDir.resolve(".buildx/job-0.pid");
+
+        // just like sshd, the exec is run in a session (and process group) of its own
+        final Process exec = start("/usr/bin/setsid", "sh", script.toString(), "--pid-file", pidFile.toString(), "sleep", "60");
+        for (int i = 0; i < 100 && !Files.exists(pidFile); i++) {
+            Thread.sleep(100L);
+        }
+        assertThat(Files.exists(pidFile), is(true));
+
+        final Process kill = start("sh", script.toString(), "--kill", pidFile.toString());
+        assertThat(kill.waitFor(), is(0));
+
+        assertThat(exec.waitFor(10L, TimeUnit.SECONDS), is(true));
+        assertThat(Files.exists(pidFile), is(false));
+    }
+
+    @Test
+    public void finishedExecLeavesNothingToKill() throws Exception {
+        assumeTrue(Files.isExecutable(Paths.get("/bin/sh")), "Requires a posix shell");
+
+        final Path script = this.hostExecScript();
+        final Path pidFile = this.tempDir.resolve(".buildx/job-0.pid");
+
+        final Process exec = start("sh", script.toString(), "--pid-file", pidFile.toString(), "exit", "3");
+        assertThat(exec.waitFor(), is(3));
+        assertThat(Files.exists(pidFile), is(false));
+
+        for (String args : asList("--kill " + pidFile, "--kill " + this.tempDir.resolve(".buildx/job-1.pid"))) {
+            final Process kill = start(("sh " + script + " " + args).split(" "));
+            assertThat(kill.waitFor(), is(0));
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import com.fizzed.buildx.TestJobs;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+class HostPoolTest {
+
+    static private Job job(int id) {
+        return new Job(id, new Target("linux", "x64"), null, null);
+    }
+
+    /**
+     * A member whose preparation blocks until released, then fails (or succeeds) as told.
+     */
+    static private class TestHostPreparer extends HostPreparer {
+        private final CountDownLatch preparing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final boolean fail;
+
+        TestHostPreparer(String host, boolean fail) {
+            super(host, null);
+            this.fail = fail;
+        }
+
+        @Override
+        public void prepareHost() throws Exception {
+            this.preparing.countDown();
+            this.release.await();
+            if (this.fail) {
+                throw new IllegalStateException("Host " + this.getHost() + " is down");
+            }
+        }
+
+        @Override
+        public void prepareOrFail(Job job) {
+            job.prepared(null, null, new ProjectImpl(null, null, job.getTarget()));
+        }
+    }
+
+    @Test
+    public void nextTakesOwnThenSteals() throws Exception {
+        final Map<String,HostPreparer> members = new LinkedHashMap<>();
+        members.put("bmh-build-1", null);
+        members.put("bmh-build-2", null);
+        final HostPool hostPool = new HostPool("linux-x64", members);
+
+        for (int i = 0; i < 5; i++) {
+            hostPool.add(job(i));
+        }
+
+        // round-robin: build-1 has 0, 2, 4 and build-2 has 1, 3
+        assertThat(hostPool.next("bmh-build-2").getId(), is(1));
+        assertThat(hostPool.next("bmh-build-2").getId(), is(3));
+        // build-2 is out of work, so it steals from the back of build-1
+        assertThat(hostPool.next("bmh-build-2").getId(), is(4));
+        assertThat(hostPool.next("bmh-build-1").getId(), is(0));
+        assertThat(hostPool.next("bmh-build-1").getId(), is(2));
+        assertThat(hostPool.next("bmh-build-1"), is(nullValue()));
+        assertThat(hostPool.next("bmh-build-2"), is(nullValue()));
+    }
+
+    @Test
+    public void memberFailingPrepareAfterOthersDrainedGivesJobBack() throws Exception {
+        final TestHostPreparer down = new TestHostPreparer("bmh-build-1", true);
+        final TestHostPreparer up = new TestHostPreparer("bmh-build-2", false);
+        up.release.countDown();
+        final Map<String,HostPreparer> members = new LinkedHashMap<>();
+        members.put("bmh-build-1", down);
+        members.put("bmh-build-2", up);
+        final HostPool hostPool = new HostPool("linux-x64", members);
+
+        final Job job = TestJobs.job(0, new Target("linux", "x64"), (host, project, t) -> {});
+        hostPool.add(job);
+
+        final List<Runnable> workers = hostPool.workers();
+        final Thread downThread = new Thread(workers.get(0));
+        final Thread upThread = new Thread(workers.get(1));
+
+        // the down member takes the only job, then the up member finds every queue empty
+        downThread.start();
+        down.preparing.await();
+        upThread.start();
+        final long deadline = System.currentTimeMillis() + 5000L;
+        while (upThread.getState() != Thread.State.WAITING && upThread.isAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+
+        // the down member fails to prepare, so its job goes to the up member (rather than failing)
+        down.release.countDown();
+        downThread.join(10000L);
+        upThread.join(10000L);
+
+        assertThat(job.getStatus(), is(JobStatus.SUCCESS));
+        assertThat(upThread.isAlive(), is(false));
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.system.Exec;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class JfrExecTest {
+
+    /**
+     * Prints its command line and exit value, so what it was configured with is visible.
+     */
+    static private class EchoExec extends Exec {
+        EchoExec() {
+            super(null);
+        }
+
+        @Override
+        public List<Path> getPaths() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        protected Exec.Result doRun() {
+            try {
+                this.pipeOutput.stream().write((this.command + " " + String.join(" ", this.arguments) + " in "
+                    + this.workingDirectory).getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Exec.Result(this, 3);
+        }
+    }
+
+    @Test
+    public void configuresAndRunsWrappedExec() {
+        final Exec exec = new JfrExec(new EchoExec(), JfrEvents.Type.HOST_EXEC, "bmh-build-1", "podman")
+            .command("podman")
+            .args("run", "--rm")
+            .arg("ubuntu:24.04")
+            .workingDir("/home/builder")
+            .exitValues(3);
+
+        assertThat(exec.runCaptureOutput(false).toString(), is("podman run --rm ubuntu:24.04 in /home/builder"));
+    }
+
+    @Test
+    public void overridesEveryMethodThatConfiguresExec() {
+        for (Method method : Exec.class.getMethods()) {
+            // default methods of mixins funnel into the ones of Exec, which are all that need to be passed on, while
+            // running it (e.g. run, runCaptureOutput) ends up in doRun
+            if (method.isBridge() || Modifier.isStatic(method.getModifiers()) || method.isDefault()
+                    || method.getDeclaringClass() == Object.class || method.getDeclaringClass() == Action.class
+                    || method.getName().startsWith("run")) {
+                continue;
+            }
+            try {
+                final Method overridden = JfrExec.class.getMethod(method.getName(), method.getParameterTypes());
+                if (overridden.getDeclaringClass() != JfrExec.class) {
+                    fail("JfrExec does not pass " + method + " on to the exec it wraps");
+                }
+            } catch (NoSuchMethodException e) {
+                fail(e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class JobDurationsTest {
+
+    @TempDir
+    Path tempDir;
+
+    static private List<Integer> ids(List<Job> jobs) {
+        return jobs.stream().map(Job::getId).collect(toList());
+    }
+
+    @Test
+    public void orderLongestFirst() throws Exception {
+        final Target x64 = new Target("linux", "x64");
+        final Target arm64 = new Target("linux", "arm64");
+        final Target riscv64 = new Target("linux", "riscv64");
+        final Target armhf = new Target("linux", "armhf");
+        final Target ppc64le = new Target("linux", "ppc64le");
+
+        final JobDurations jobDurations = new JobDurations(tempDir.resolve("durations.properties"))
+            .setExpectedMillis(x64, 60000L)
+            .setExpectedMillis(arm64, 120000L)
+            .setExpectedMillis(riscv64, 1500000L)
+            .setExpectedMillis(armhf, 60000L);
+
+        final List<Job> jobs = asList(new Job(0, x64, null, null), new Job(1, arm64, null, null),
+            new Job(2, riscv64, null, null), new Job(3, armhf, null, null), new Job(4, ppc64le, null, null));
+
+        // never ran first, then longest first, with ties in declared order
+        assertThat(ids(jobDurations.order(jobs)), contains(4, 2, 1, 0, 3));
+
+        jobDurations.store();
+        final JobDurations loaded = JobDurations.load(jobDurations.getFile());
+
+        assertThat(loaded.getExpectedMillis(riscv64), is(1500000L));
+        assertThat(loaded.getExpectedMillis(ppc64le), is(nullValue()));
+        assertThat(ids(loaded.order(jobs)), contains(4, 2, 1, 0, 3));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.fizzed.buildx.TestJobs.meteredOutput;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class JobWatchdogTest {
+
+    static private Job sleepingJob(int id, Target target, CountDownLatch started) {
+        final Job job = new Job(id, target, meteredOutput(id),
+            (host, project, t) -> {
+                started.countDown();
+                Thread.sleep(60000L);
+            });
+        job.prepared(null, null, new ProjectImpl(null, null, target));
+        return job;
+    }
+
+    @Test
+    public void timesOutLongAndStalledJobs() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final Job slow = sleepingJob(0, new Target("linux", "riscv64").setTimeout(Duration.ofMinutes(5L)), started);
+        final Job stalled = sleepingJob(1, new Target("linux", "x64"), started);
+
+        final Thread slowThread = new Thread(slow);
+        final Thread stalledThread = new Thread(stalled);
+        slowThread.start();
+        stalledThread.start();
+        started.await();
+
+        final JobWatchdog watchdog = new JobWatchdog(asList(slow, stalled), null, Duration.ofMinutes(10L));
+
+        // nothing has run too long yet (even on a slow machine)
+        watchdog.check();
+        assertThat(slow.getStatus(), is(JobStatus.RUNNING));
+        assertThat(stalled.getStatus(), is(JobStatus.RUNNING));
+
+        // the clock is moved ahead rather than waited on (a timed out job is only marked as such once it stops)
+        watchdog.check(System.currentTimeMillis() + Duration.ofMinutes(6L).toMillis());
+        slowThread.join(10000L);
+        assertThat(slow.getStatus(), is(JobStatus.TIMEOUT));
+        assertThat(slow.getMessage(), startsWith("Timed out"));
+        assertThat(stalled.getStatus(), is(JobStatus.RUNNING));
+
+        watchdog.check(System.currentTimeMillis() + Duration.ofMinutes(11L).toMillis());
+        stalledThread.join(10000L);
+        assertThat(stalled.getStatus(), is(JobStatus.TIMEOUT));
+        assertThat(stalled.getMessage(), startsWith("Stalled"));
+    }
+
+    @Test
+    public void timedOutJobLeavesItsThreadFitToRunTheNextJob() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final Target target = new Target("linux", "riscv64").setTimeout(Duration.ofMinutes(5L));
+        // like an exec that stops once interrupted, but leaves its thread interrupted
+        final Job slow = new Job(0, target, meteredOutput(0), (host, project, t) -> {
+            started.countDown();
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(100000000L);
+            }
+            throw new IllegalStateException("Interrupted");
+        });
+        slow.prepared(null, null, new ProjectImpl(null, null, target));
+        // sleeps for a bit (and fails if interrupted)
+        final Job next = new Job(1, target, meteredOutput(1), (host, project, t) -> Thread.sleep(100L));
+        next.prepared(null, null, new ProjectImpl(null, null, target));
+
+        // just like the executors, the jobs are run one after the other on the same thread
+        final Thread thread = new Thread(() -> {
+            slow.run();
+            next.run();
+        });
+        thread.start();
+        started.await();
+
+        new JobWatchdog(asList(slow), null, Duration.ofMinutes(10L))
+            .check(System.currentTimeMillis() + Duration.ofMinutes(6L).toMillis());
+        thread.join(10000L);
+
+        assertThat(slow.getStatus(), is(JobStatus.TIMEOUT));
+        assertThat(next.getStatus(), is(JobStatus.SUCCESS));
+    }
+
+}
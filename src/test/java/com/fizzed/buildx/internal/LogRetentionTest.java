@@ -0,0 +1,65 @@
+package com.fizzed.buildx.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+class LogRetentionTest {
+
+    @TempDir
+    Path tempDir;
+
+    private void run(long executeId, int logBytes) throws Exception {
+        final Path runDir = this.tempDir.resolve(Long.toString(executeId));
+        Files.createDirectories(runDir);
+        Files.write(runDir.resolve("job-0-linux-x64.log"), new byte[logBytes]);
+    }
+
+    @Test
+    public void pruneOldestRuns() throws Exception {
+        final long day = Duration.ofDays(1).toMillis();
+        final long now = 100 * day;
+        for (int i = 1; i <= 5; i++) {
+            this.run(now - i * day, 1000);
+        }
+
+        assertThat(new LogRetention(0, null, 0L).prune(this.tempDir, now).size(), is(0));
+
+        // by count
+        assertThat(new LogRetention(4, null, 0L).prune(this.tempDir, now).size(), is(1));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - 5 * day))), is(false));
+
+        // by age
+        assertThat(new LogRetention(0, Duration.ofHours(84), 0L).prune(this.tempDir, now).size(), is(1));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - 4 * day))), is(false));
+
+        // by size (keeps the newest that fit)
+        assertThat(new LogRetention(0, null, 2500L).prune(this.tempDir, now).size(), is(1));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - 2 * day))), is(true));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - 3 * day))), is(false));
+
+        // the most recent run is always kept
+        assertThat(new LogRetention(0, null, 10L).prune(this.tempDir, now).size(), is(1));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - day))), is(true));
+    }
+
+    @Test
+    public void pruneByAgeKeepsMostRecentRun() throws Exception {
+        final long day = Duration.ofDays(1).toMillis();
+        final long now = 100 * day;
+        // e.g. buildx hasn't been run for a while
+        this.run(now - 30 * day, 1000);
+        this.run(now - 31 * day, 1000);
+
+        assertThat(new LogRetention(0, Duration.ofDays(7), 0L).prune(this.tempDir, now).size(), is(1));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - 30 * day))), is(true));
+        assertThat(Files.exists(this.tempDir.resolve(Long.toString(now - 31 * day))), is(false));
+    }
+
+}
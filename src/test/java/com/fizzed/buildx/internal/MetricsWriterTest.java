@@ -0,0 +1,57 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static com.fizzed.buildx.TestJobs.job;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class MetricsWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void write() throws Exception {
+        final Span sync = Span.startShared("sync", "bmh-build-1").end().setBytes(4096L);
+        final Job a = job(0, new Target("linux", "x64").setHost("bmh-build-1"))
+            .addSpan(new Span("queue", "bmh-build-1", false, 1000L, 3500L))
+            .addSpan(sync);
+        final Job b = job(1, new Target("linux", "arm64").setHost("bmh-build-1"))
+            .addSpan(sync)
+            .addSpan(new Span("run \"tests\"", "bmh-build-1", false, 1000L, 2000L));
+        b.prepareFailed(new IllegalStateException("Host is down"));
+        b.run();
+
+        final Path file = this.tempDir.resolve("buildx.prom");
+        new MetricsWriter(file, "42", Arrays.asList(a, b)).write();
+
+        final String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+
+        // the run is only identified once, so every run updates the same series
+        assertThat(text, containsString("# TYPE buildx_run info\n"));
+        assertThat(text, containsString("buildx_run_info{execute_id=\"42\"} 1\n"));
+        assertThat(text.indexOf("execute_id="), is(text.lastIndexOf("execute_id=")));
+        assertThat(text, not(containsString("job=")));
+        assertThat(text, containsString("# TYPE buildx_jobs gauge\n"));
+        assertThat(text, containsString("buildx_jobs{status=\"failed\"} 1\n"));
+        assertThat(text, containsString("buildx_jobs{status=\"success\"} 0\n"));
+        assertThat(text, containsString("buildx_queue_wait_seconds{target=\"linux-x64\",host=\"bmh-build-1\"} 2.5\n"));
+        // the sync shared by both jobs is only counted once
+        assertThat(text, containsString("buildx_sync_bytes{host=\"bmh-build-1\"} 4096\n"));
+        assertThat(text.indexOf("buildx_sync_bytes{"), is(text.lastIndexOf("buildx_sync_bytes{")));
+        assertThat(text, containsString("phase=\"run \\\"tests\\\"\""));
+        assertThat(text, endsWith("# EOF\n"));
+        assertThat(Files.list(this.tempDir).count(), is(1L));
+    }
+
+}
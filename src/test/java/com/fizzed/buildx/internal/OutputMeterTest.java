@@ -0,0 +1,37 @@
+package com.fizzed.buildx.internal;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class OutputMeterTest {
+
+    @Test
+    public void keepsLastLines() {
+        final ByteArrayOutputStream file = new ByteArrayOutputStream();
+        final OutputMeter meter = new OutputMeter(file, 4);
+        final PrintStream output = new PrintStream(meter);
+
+        assertThat(meter.getLastLine(), is(nullValue()));
+
+        output.println("[INFO] Compiling 42 source files");
+        output.println("\u001B[1m[INFO] Tests run: 1\u001B[0m");
+        output.print("Downloading 10%\rDownloading 50%\r");
+        output.println("gcc -O2 -c lib.c");
+        output.print("partial");
+        output.flush();
+
+        assertThat(meter.getLastLines(), contains("[INFO] Tests run: 1", "Downloading 10%", "Downloading 50%", "gcc -O2 -c lib.c"));
+        assertThat(meter.getLastLine(), is("gcc -O2 -c lib.c"));
+        assertThat(meter.getLines(), is(3L));
+        assertThat(meter.getBytes(), is((long)file.size()));
+
+        output.println();
+        assertThat(meter.getLastLine(), is("partial"));
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.fizzed.buildx.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class ProbeCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void storeAndLoad() {
+        final ProbeCache probeCache = new ProbeCache(tempDir, 60000L, false);
+
+        final Map<String,String> facts = new LinkedHashMap<>();
+        facts.put("homeDir", "/home/builder");
+        facts.put("podmanVersion", null);
+        final Map<String,String> outputs = new LinkedHashMap<>();
+        outputs.put(RecordingSystemExecutor.catFileKey("/etc/os-release"), RecordingSystemExecutor.okOutput("ID=ubuntu\nVERSION_ID=\"24.04\"\n"));
+
+        probeCache.store("builder@bmh-build-1:22", new ProbeCache.Entry("Linux bmh-build-1", System.currentTimeMillis(), facts, outputs));
+
+        final ProbeCache.Entry entry = probeCache.load("builder@bmh-build-1:22", "Linux bmh-build-1");
+
+        assertThat(entry, is(not(nullValue())));
+        assertThat(entry.getFact("homeDir"), is("/home/builder"));
+        assertThat(entry.getFact("podmanVersion"), is(nullValue()));
+        assertThat(entry.getOutputs(), is(outputs));
+    }
+
+    @Test
+    public void loadInvalidatedByFingerprintTtlOrReprobe() {
+        final Map<String,String> empty = new LinkedHashMap<>();
+
+        new ProbeCache(tempDir, 60000L, false)
+            .store("host1", new ProbeCache.Entry("Linux host1", System.currentTimeMillis() - 5000L, empty, empty));
+
+        assertThat(new ProbeCache(tempDir, 60000L, false).load("host1", "Linux host1 upgraded"), is(nullValue()));
+        assertThat(new ProbeCache(tempDir, 1000L, false).load("host1", "Linux host1"), is(nullValue()));
+        assertThat(new ProbeCache(tempDir, 60000L, true).load("host1", "Linux host1"), is(nullValue()));
+        assertThat(new ProbeCache(tempDir, 60000L, false).load("host2", "Linux host1"), is(nullValue()));
+    }
+
+    @Test
+    public void loadOfCorruptFileIsMiss() throws Exception {
+        final Map<String,String> empty = new LinkedHashMap<>();
+
+        new ProbeCache(tempDir, 60000L, false)
+            .store("host1", new ProbeCache.Entry("Linux host1", System.currentTimeMillis(), empty, empty));
+
+        // e.g. half-edited by hand
+        final Path file = tempDir.resolve("host1.properties");
+        Files.write(file, new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+            .replaceAll("probedAt=\\d+", "probedAt=yesterday").getBytes(StandardCharsets.UTF_8));
+
+        assertThat(new ProbeCache(tempDir, 60000L, false).load("host1", "Linux host1"), is(nullValue()));
+    }
+
+    @Test
+    public void recordAndReplay() throws Exception {
+        final RecordingSystemExecutor recorder = new RecordingSystemExecutor(null, null);
+        try {
+            recorder.catFile("/etc/os-release");
+            fail();
+        } catch (IllegalStateException e) {
+            // expected, nothing recorded and nothing to delegate to
+        }
+
+        final Map<String,String> outputs = new LinkedHashMap<>();
+        outputs.put(RecordingSystemExecutor.execProcessKey("uname", "-a"), RecordingSystemExecutor.okOutput("Linux host1"));
+        outputs.put(RecordingSystemExecutor.execProcessKey("sw_vers"), RecordingSystemExecutor.errorOutput("not found"));
+
+        final RecordingSystemExecutor replayer = new RecordingSystemExecutor(null, outputs);
+
+        assertThat(replayer.execProcess(asList(0), "uname", "-a"), is("Linux host1"));
+        try {
+            replayer.execProcess(asList(0), "sw_vers");
+            fail();
+        } catch (Exception e) {
+            assertThat(e.getMessage(), is("not found"));
+        }
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.jne.LibC;
+import com.fizzed.jne.OperatingSystem;
+import com.fizzed.jne.PlatformInfo;
+import com.fizzed.jne.internal.SystemExecutor;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class ProbeScriptTest {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Fails on anything the probe script did not capture (PlatformInfo swallows exceptions, but not errors).
+     */
+    static private final SystemExecutor NOTHING_CAPTURED = new SystemExecutor() {
+        @Override
+        public String catFile(String file) {
+            throw new AssertionError("Probe script did not capture '" + RecordingSystemExecutor.catFileKey(file) + "'");
+        }
+
+        @Override
+        public String execProcess(List<Integer> exitValues, String... command) {
+            throw new AssertionError("Probe script did not capture '" + RecordingSystemExecutor.execProcessKey(command) + "'");
+        }
+    };
+
+    static private ProbeScript runProbeScript(Path binDir, String input, String... command) throws Exception {
+        final ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true);
+        if (binDir != null) {
+            processBuilder.environment().put("PATH", binDir + ":" + System.getenv("PATH"));
+        }
+        final Process process = processBuilder.start();
+        try (OutputStream stdin = process.getOutputStream()) {
+            if (input != null) {
+                stdin.write(input.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final String output = IOUtils.toString(process.getInputStream(), StandardCharsets.UTF_8);
+        assertThat(process.waitFor(), is(0));
+        return ProbeScript.parse(output);
+    }
+
+    static private void executable(Path file, String script) throws Exception {
+        Files.createDirectories(file.getParent());
+        Files.write(file, ("#!/bin/sh\n" + script).getBytes(StandardCharsets.UTF_8));
+        assertThat(file.toFile().setExecutable(true), is(true));
+    }
+
+    @Test
+    public void parse() throws Exception {
+        final ProbeScript probeScript = ProbeScript.parse(
+            "Welcome to the build host\r\n" +
+            "fact.currentDir=/home/builder\r\n" +
+            "fact.dockerVersion=\n" +
+            "exit.exec uname -a=0\n" +
+            "line.exec uname -a=Linux bmh-build-1 6.8.0 x86_64 GNU/Linux\n" +
+            "exit.exec ldd /bin/ls=0\n" +
+            "line.exec ldd /bin/ls=\tlibc.musl-x86_64.so.1 => /lib/ld-musl-x86_64.so.1 (0x7f2c1a0c3000)\n" +
+            "exit.exec /lib/ld-musl-x86_64.so.1=1\n" +
+            "line.exec /lib/ld-musl-x86_64.so.1=musl libc (x86_64)\n" +
+            "line.exec /lib/ld-musl-x86_64.so.1=Version 1.2.4\n" +
+            "exit.cat /etc/os-release=0\n" +
+            "line.cat /etc/os-release=ID=alpine\n" +
+            "exit.cat /etc/release=1\n" +
+            "line.cat /etc/release=cat: can't open '/etc/release': No such file or directory\n" +
+            "exit.exec podman -v=127\n" +
+            "line.exec podman -v=sh: podman: not found\n");
+
+        assertThat(probeScript.getFact("currentDir"), is("/home/builder"));
+        assertThat(probeScript.getFact("dockerVersion"), is(nullValue()));
+        assertThat(probeScript.getSuccessfulOutput("uname", "-a"), is("Linux bmh-build-1 6.8.0 x86_64 GNU/Linux\n"));
+        assertThat(probeScript.getSuccessfulOutput("podman", "-v"), is(nullValue()));
+
+        final RecordingSystemExecutor replayer = new RecordingSystemExecutor(null, probeScript.getOutputs());
+
+        assertThat(replayer.catFile("/etc/os-release"), is("ID=alpine\n"));
+        try {
+            replayer.catFile("/etc/release");
+            fail();
+        } catch (Exception e) {
+            // expected
+        }
+        // musl's loader exits with 1, which is fine since JNE expects any exit value from it
+        assertThat(replayer.execProcess(emptyList(), "/lib/ld-musl-x86_64.so.1"), is("musl libc (x86_64)\nVersion 1.2.4\n"));
+        try {
+            replayer.execProcess(asList(0), "/lib/ld-musl-x86_64.so.1");
+            fail();
+        } catch (Exception e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void replaysPlatformDetectionOfHost() throws Exception {
+        assumeTrue(Files.isExecutable(Paths.get("/bin/sh")), "Requires a posix shell");
+
+        // just like over ssh, the script is piped to the shell
+        final ProbeScript probeScript = runProbeScript(null, ProbeScript.load(), "sh", "-s");
+
+        final PlatformInfo expected = PlatformInfo.detect(SystemExecutor.LOCAL, PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+        final PlatformInfo replayed = PlatformInfo.detect(new RecordingSystemExecutor(NOTHING_CAPTURED, probeScript.getOutputs()),
+            PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+
+        assertThat(replayed.getOperatingSystem(), is(expected.getOperatingSystem()));
+        assertThat(replayed.getHardwareArchitecture(), is(expected.getHardwareArchitecture()));
+        assertThat(replayed.getDisplayName(), is(expected.getDisplayName()));
+        assertThat(replayed.getVersion(), is(expected.getVersion()));
+        assertThat(replayed.getLibC(), is(expected.getLibC()));
+        assertThat(replayed.getLibCVersion(), is(expected.getLibCVersion()));
+    }
+
+    @Test
+    public void replaysPlatformDetectionOfMuslContainer() throws Exception {
+        assumeTrue(Files.isExecutable(Paths.get("/bin/sh")), "Requires a posix shell");
+
+        // what the script finds in e.g. an alpine container (whose musl loader exits with 1 when asked its version)
+        final Path binDir = this.tempDir.resolve("bin");
+        final Path loader = this.tempDir.resolve("lib/ld-musl-x86_64.so.1");
+        executable(binDir.resolve("uname"), "echo 'Linux 3f2a9c1e7b4d 6.8.0-45-generic #45-Ubuntu SMP x86_64 Linux'\n");
+        executable(binDir.resolve("ldd"),
+            "echo '\t/lib/ld-musl-x86_64.so.1 (0x7f2c1a0c3000)'\n" +
+            "echo '\tlibc.musl-x86_64.so.1 => " + loader + " (0x7f2c1a0c3000)'\n");
+        executable(loader, "echo 'musl libc (x86_64)'\necho 'Version 1.2.4'\necho 'Dynamic Program Loader'\nexit 1\n");
+
+        // just like in the container, the script is run from a file
+        final Path script = this.tempDir.resolve(".buildx/host-probe.sh");
+        Files.createDirectories(script.getParent());
+        Files.write(script, ProbeScript.load().getBytes(StandardCharsets.UTF_8));
+        final ProbeScript probeScript = runProbeScript(binDir, null, "sh", script.toString());
+
+        final PlatformInfo replayed = PlatformInfo.detect(new RecordingSystemExecutor(NOTHING_CAPTURED, probeScript.getOutputs()),
+            PlatformInfo.Detect.VERSION, PlatformInfo.Detect.LIBC);
+
+        assertThat(replayed.getOperatingSystem(), is(OperatingSystem.LINUX));
+        assertThat(replayed.getLibC(), is(LibC.MUSL));
+        assertThat(replayed.getLibCVersion().toString(), is("1.2.4"));
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+
+import static com.fizzed.buildx.TestJobs.job;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ReadyQueueTest {
+
+    @Test
+    public void takeSkipsJobsWaitingOnUpstream() throws Exception {
+        final Job nativeLib = job(0, new Target("linux-x64"));
+        final Job test = job(1, new Target("jdk11")).addUpstreamJob(nativeLib);
+        final Job other = job(2, new Target("jdk17"));
+
+        final ReadyQueue readyQueue = new ReadyQueue();
+        readyQueue.add(test);
+        readyQueue.add(other);
+
+        // the test is first in line, but must wait on the native lib
+        assertThat(readyQueue.take(), is(other));
+        assertThat(test.isReady(), is(false));
+
+        // once the native lib is done (it failed) the test is ready, but skipped
+        nativeLib.prepareFailed(new IllegalStateException("Host is down"));
+        nativeLib.run();
+
+        assertThat(nativeLib.getStatus(), is(JobStatus.FAILED));
+        assertThat(readyQueue.take(), is(test));
+        assertThat(readyQueue.take(), is(nullValue()));
+
+        test.run();
+
+        assertThat(test.getStatus(), is(JobStatus.SKIPPED));
+        assertThat(test.getMessage(), containsString("Upstream job #0"));
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void fingerprintStoreAndRestore() throws Exception {
+        final Path projectDir = this.tempDir.resolve("project");
+        Files.createDirectories(projectDir.resolve("src"));
+        Files.createDirectories(projectDir.resolve("target/native"));
+        Files.write(projectDir.resolve("src/lib.c"), "int main() {}".getBytes());
+        Files.write(projectDir.resolve("target/native/lib.so"), "binary".getBytes());
+
+        final Job job = new Job(0, new Target("linux", "x64").setArtifacts("target/native"), null, null);
+        final Path cacheDir = this.tempDir.resolve("results");
+
+        final ResultCache resultCache = new ResultCache(cacheDir, projectDir, ResultCache.projectHash(projectDir, asList("target/")));
+        final String fingerprint = resultCache.fingerprint(job, "sha256:abc", null);
+
+        assertThat(resultCache.fingerprint(job, "sha256:abc", null), is(fingerprint));
+        assertThat(resultCache.fingerprint(job, "sha256:def", null), is(not(fingerprint)));
+        assertThat(resultCache.fingerprint(job, "sha256:abc", "gcc-13"), is(not(fingerprint)));
+        assertThat(resultCache.restore(job, fingerprint), is(false));
+
+        resultCache.store(job, fingerprint);
+        Files.delete(projectDir.resolve("target/native/lib.so"));
+
+        assertThat(resultCache.restore(job, fingerprint), is(true));
+        assertThat(new String(Files.readAllBytes(projectDir.resolve("target/native/lib.so"))), is("binary"));
+
+        // ignored files (such as the artifacts) don't change the project, but sources do
+        Files.write(projectDir.resolve("target/native/other.so"), "binary".getBytes());
+        assertThat(new ResultCache(cacheDir, projectDir, ResultCache.projectHash(projectDir, asList("target/"))).fingerprint(job, "sha256:abc", null), is(fingerprint));
+        Files.write(projectDir.resolve("src/lib.c"), "int main() { return 1; }".getBytes());
+        assertThat(new ResultCache(cacheDir, projectDir, ResultCache.projectHash(projectDir, asList("target/"))).fingerprint(job, "sha256:abc", null), is(not(fingerprint)));
+    }
+
+    @Test
+    public void fingerprintIgnoresNestedTargetDirs() throws Exception {
+        final Path projectDir = this.tempDir.resolve("project");
+        Files.createDirectories(projectDir.resolve("module-a/src"));
+        Files.createDirectories(projectDir.resolve("module-a/target/classes"));
+        Files.write(projectDir.resolve("module-a/src/App.java"), "class App {}".getBytes());
+        Files.write(projectDir.resolve("module-a/target/classes/App.class"), "v1".getBytes());
+
+        final Job job = new Job(0, new Target("linux", "x64"), null, null);
+        final Path cacheDir = this.tempDir.resolve("results");
+        final String fingerprint = new ResultCache(cacheDir, projectDir, ResultCache.projectHash(projectDir, asList("target/"))).fingerprint(job, "sha256:abc", null);
+
+        // build output of a nested module is ignored by the sync, so it must not change the fingerprint either
+        Files.write(projectDir.resolve("module-a/target/classes/App.class"), "v2".getBytes());
+        assertThat(new ResultCache(cacheDir, projectDir, ResultCache.projectHash(projectDir, asList("target/"))).fingerprint(job, "sha256:abc", null), is(fingerprint));
+    }
+
+    @Test
+    public void fingerprintIsOfTreeHashedUpFront() throws Exception {
+        final Path projectDir = this.tempDir.resolve("project");
+        Files.createDirectories(projectDir.resolve("src"));
+        Files.write(projectDir.resolve("src/lib.c"), "int main() {}".getBytes());
+
+        final Job job = new Job(0, new Target("linux", "x64").setArtifacts("lib/native.so"), null, null);
+        final ResultCache resultCache = new ResultCache(this.tempDir.resolve("results"), projectDir,
+            ResultCache.projectHash(projectDir, asList("target/")));
+        final String fingerprint = resultCache.fingerprint(job, null, null);
+
+        // e.g. another job restored (or pulled back) its artifacts into the project while this run is underway
+        Files.createDirectories(projectDir.resolve("lib"));
+        Files.write(projectDir.resolve("lib/native.so"), "binary".getBytes());
+
+        assertThat(resultCache.fingerprint(job, null, null), is(fingerprint));
+    }
+
+}
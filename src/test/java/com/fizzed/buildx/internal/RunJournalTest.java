@@ -0,0 +1,56 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.buildx.Job;
+import com.fizzed.buildx.JobStatus;
+import com.fizzed.buildx.Target;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static com.fizzed.buildx.TestJobs.job;
+import static com.fizzed.buildx.internal.Utils.targetKey;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class RunJournalTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void journalsCompletedAndUnfinishedJobs() throws Exception {
+        final Target x64 = new Target("linux", "x64");
+        final Target arm64 = new Target("linux", "arm64");
+        final Target riscv64 = new Target("linux", "riscv64");
+        final Job succeeded = job(0, x64, (host, project, t) -> {});
+        final Job failed = job(1, arm64);
+        final Job neverRan = job(2, riscv64);
+
+        final Path logsDir = this.tempDir.resolve(".buildx-logs");
+        Files.createDirectories(logsDir.resolve("1700000000000"));
+        Files.write(logsDir.resolve("1700000000000").resolve(RunJournal.FILE_NAME), "planned\t0\tlocal/old\n".getBytes());
+
+        try (RunJournal journal = RunJournal.create(logsDir.resolve("1800000000000").resolve(RunJournal.FILE_NAME),
+                asList(succeeded, failed, neverRan))) {
+            succeeded.prepared(null, null, new ProjectImpl(null, null, x64));
+            succeeded.run();
+            failed.prepareFailed(new IllegalStateException("Host is down\twith a tab"));
+            failed.run();
+            // the run was killed before riscv64 ran
+        }
+
+        final Path journalFile = RunJournal.findLatest(logsDir);
+        assertThat(journalFile.getParent().getFileName().toString(), is("1800000000000"));
+
+        final Map<String,JobStatus> statuses = RunJournal.load(journalFile);
+        assertThat(statuses.keySet(), contains(targetKey(x64), targetKey(arm64), targetKey(riscv64)));
+        assertThat(statuses.get(targetKey(x64)), is(JobStatus.SUCCESS));
+        assertThat(statuses.get(targetKey(arm64)), is(JobStatus.FAILED));
+        assertThat(statuses.get(targetKey(riscv64)), is(nullValue()));
+    }
+
+}
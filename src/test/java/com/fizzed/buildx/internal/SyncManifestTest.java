@@ -0,0 +1,113 @@
+package com.fizzed.buildx.internal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class SyncManifestTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void scanHonorsIgnorePaths() throws Exception {
+        final Path projectDir = Files.createDirectories(tempDir.resolve("project"));
+        Files.createDirectories(projectDir.resolve("src/main"));
+        Files.createDirectories(projectDir.resolve("target/classes"));
+        Files.write(projectDir.resolve("pom.xml"), "<project/>".getBytes());
+        Files.write(projectDir.resolve("src/main/App.java"), "class App {}".getBytes());
+        Files.write(projectDir.resolve("target/classes/App.class"), "cafebabe".getBytes());
+
+        final SyncManifest manifest = SyncManifest.scan(projectDir, asList("target/", ".git/"));
+
+        assertThat(manifest.getFiles().keySet(), contains("pom.xml", "src/main/App.java"));
+        assertThat(manifest.getFiles().get("pom.xml"), startsWith("10:"));
+        assertThat(manifest.getDirs(), contains("src", "src/main"));
+    }
+
+    @Test
+    public void isIgnoredLikeGitignore() {
+        final List<String> ignorePaths = asList("target/", ".idea/", "*.log", "/dist/", "docs/build/");
+
+        assertThat(SyncManifest.isIgnored("target", true, ignorePaths), is(true));
+        assertThat(SyncManifest.isIgnored("module-a/target", true, ignorePaths), is(true));
+        assertThat(SyncManifest.isIgnored("module-a/.idea", true, ignorePaths), is(true));
+        assertThat(SyncManifest.isIgnored("module-a/target", false, ignorePaths), is(false));
+        assertThat(SyncManifest.isIgnored("module-a/build.log", false, ignorePaths), is(true));
+        assertThat(SyncManifest.isIgnored("dist", true, ignorePaths), is(true));
+        assertThat(SyncManifest.isIgnored("module-a/dist", true, ignorePaths), is(false));
+        assertThat(SyncManifest.isIgnored("docs/build", true, ignorePaths), is(true));
+        assertThat(SyncManifest.isIgnored("module-a/docs/build", true, ignorePaths), is(false));
+        assertThat(SyncManifest.isIgnored("src/main/App.java", false, ignorePaths), is(false));
+    }
+
+    @Test
+    public void storeLoadAndDiff() throws Exception {
+        final Path projectDir = Files.createDirectories(tempDir.resolve("project"));
+        final List<String> ignorePaths = asList("target/");
+        Files.createDirectories(projectDir.resolve("docs"));
+        Files.write(projectDir.resolve("pom.xml"), "<project/>".getBytes());
+        Files.write(projectDir.resolve("README.md"), "readme".getBytes());
+        Files.write(projectDir.resolve("docs/guide.md"), "guide".getBytes());
+
+        final Path manifestFile = tempDir.resolve("sync/host.properties");
+        SyncManifest.scan(projectDir, ignorePaths)
+            .withMarker("marker1", "remote-build/project")
+            .store(manifestFile);
+
+        final SyncManifest previous = SyncManifest.load(manifestFile);
+
+        assertThat(previous.getMarker(), is("marker1"));
+        assertThat(previous.getRemoteDir(), is("remote-build/project"));
+        assertThat(previous.getIgnorePaths(), is(ignorePaths));
+        assertThat(SyncManifest.scan(projectDir, ignorePaths).diff(previous).isEmpty(), is(true));
+
+        // modify, add and delete
+        Files.write(projectDir.resolve("pom.xml"), "<project></project>".getBytes());
+        Files.setLastModifiedTime(projectDir.resolve("README.md"), FileTime.fromMillis(1000L));
+        Files.write(projectDir.resolve("build.sh"), "#!/bin/sh".getBytes());
+        Files.delete(projectDir.resolve("docs/guide.md"));
+        Files.delete(projectDir.resolve("docs"));
+
+        final SyncManifest.Delta delta = SyncManifest.scan(projectDir, ignorePaths).diff(previous);
+
+        assertThat(delta.getChangedFiles(), contains("README.md", "build.sh", "pom.xml"));
+        assertThat(delta.getDeletedFiles(), contains("docs/guide.md"));
+        assertThat(delta.getDeletedDirs(), contains("docs"));
+        assertThat(SyncManifest.load(tempDir.resolve("sync/missing.properties")), is(nullValue()));
+    }
+
+    @Test
+    public void diffHasPermissionChangesAndNewEmptyDirs() throws Exception {
+        final Path projectDir = Files.createDirectories(tempDir.resolve("project"));
+        assumeTrue(projectDir.getFileSystem().supportedFileAttributeViews().contains("posix"), "Requires posix permissions");
+        Files.createDirectories(projectDir.resolve("scripts"));
+        Files.write(projectDir.resolve("scripts/build.sh"), "#!/bin/sh".getBytes());
+        Files.setPosixFilePermissions(projectDir.resolve("scripts/build.sh"), PosixFilePermissions.fromString("rw-r--r--"));
+
+        final SyncManifest previous = SyncManifest.scan(projectDir, null);
+
+        assertThat(previous.getFiles().get("scripts/build.sh"), endsWith(":rw-r--r--"));
+
+        // chmod +x (which leaves the size & last modified time as is) and a new empty dir (with no file to create it)
+        Files.setPosixFilePermissions(projectDir.resolve("scripts/build.sh"), PosixFilePermissions.fromString("rwxr-xr-x"));
+        Files.createDirectories(projectDir.resolve("output/reports"));
+
+        final SyncManifest.Delta delta = SyncManifest.scan(projectDir, null).diff(previous);
+
+        assertThat(delta.getChangedFiles(), contains("scripts/build.sh"));
+        assertThat(delta.getAddedDirs(), contains("output", "output/reports"));
+        assertThat(delta.size(), is(3));
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.fizzed.buildx.internal;
+
+import com.fizzed.blaze.core.Action;
+import com.fizzed.blaze.core.Result;
+import com.fizzed.blaze.system.Exec;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JfrEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    static private class SleepAction extends Action<SleepAction.SleepResult,Integer> {
+        static private class SleepResult extends Result<SleepAction,Integer,SleepResult> {
+            SleepResult(SleepAction action) {
+                super(action, 0);
+            }
+        }
+
+        SleepAction() {
+            super(null);
+        }
+
+        @Override
+        protected SleepResult doRun() {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new SleepResult(this);
+        }
+    }
+
+    static private class SleepExec extends Exec {
+        SleepExec() {
+            super(null);
+        }
+
+        @Override
+        public List<Path> getPaths() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        protected Exec.Result doRun() {
+            try {
+                Thread.sleep(50L);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new Exec.Result(this, 0);
+        }
+    }
+
+    private List<RecordedEvent> record(String eventName, Runnable runnable) throws Exception {
+        final Path file = this.tempDir.resolve("buildx.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(eventName);
+            recording.start();
+            runnable.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        return RecordingFile.readAllEvents(file).stream()
+            .filter(v -> v.getEventType().getName().equals(eventName))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void eventIsRecordedWithItsFields() throws Exception {
+        assumeTrue(JfrEvents.isAvailable(), "JFR events were not compiled in (or this jvm has no jdk.jfr)");
+
+        // nothing is recording it
+        try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.SYNC)) {
+            assertThat(event.isEnabled(), is(false));
+        }
+
+        final List<RecordedEvent> events = this.record("com.fizzed.buildx.Sync", () -> {
+            try (JfrEvents.Event event = JfrEvents.begin(JfrEvents.Type.SYNC)) {
+                assertThat(event.isEnabled(), is(true));
+                event.host("bmh-build-1").detail("remote-build/buildx").bytes(4096L);
+                Thread.sleep(50L);
+                event.outcome("delta");
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(events, hasSize(1));
+        final RecordedEvent event = events.get(0);
+        assertThat(event.getDuration().compareTo(Duration.ofMillis(50L)) >= 0, is(true));
+        assertThat(event.getString("host"), is("bmh-build-1"));
+        assertThat(event.getString("detail"), is("remote-build/buildx"));
+        assertThat(event.getLong("bytes"), is(4096L));
+        assertThat(event.getString("outcome"), is("delta"));
+    }
+
+    @Test
+    public void actionIsRecordedForAsLongAsItRuns() throws Exception {
+        assumeTrue(JfrEvents.isAvailable(), "JFR events were not compiled in (or this jvm has no jdk.jfr)");
+
+        final JfrAction<?,?> action = new JfrAction<>(new SleepAction(), JfrEvents.Type.HOST_RSYNC, "bmh-build-1", "target/natives");
+
+        // wrapping it is not an event, running it is
+        final List<RecordedEvent> events = this.record("com.fizzed.buildx.HostRsync", action::run);
+
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getDuration().compareTo(Duration.ofMillis(50L)) >= 0, is(true));
+        assertThat(events.get(0).getString("host"), is("bmh-build-1"));
+        assertThat(events.get(0).getString("detail"), is("target/natives"));
+    }
+
+    @Test
+    public void execIsRecordedWithItsCommandLine() throws Exception {
+        assumeTrue(JfrEvents.isAvailable(), "JFR events were not compiled in (or this jvm has no jdk.jfr)");
+
+        final Exec exec = new JfrExec(new SleepExec(), JfrEvents.Type.HOST_EXEC, "bmh-build-1", "podman")
+            .args("run", "--rm")
+            .arg("ubuntu:24.04");
+
+        final List<RecordedEvent> events = this.record("com.fizzed.buildx.HostExec", exec::run);
+
+        assertThat(events, hasSize(1));
+        assertThat(events.get(0).getDuration().compareTo(Duration.ofMillis(50L)) >= 0, is(true));
+        assertThat(events.get(0).getString("detail"), is("podman run --rm ubuntu:24.04"));
+        assertThat(events.get(0).getString("outcome"), is("exit 0"));
+    }
+
+}